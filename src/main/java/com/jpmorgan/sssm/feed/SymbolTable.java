@@ -0,0 +1,79 @@
+package com.jpmorgan.sssm.feed;
+
+import com.jpmorgan.sssm.model.Stock;
+import lombok.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Open addressing table resolving ASCII encoded symbols straight from a {@link ByteBuffer}, without decoding them into
+ * {@link String}s.
+ *
+ * @author Anthony Accioly
+ */
+final class SymbolTable {
+
+    private final byte[][] symbols;
+    private final Stock[] stocks;
+    private final int mask;
+
+    SymbolTable(@NonNull Collection<Stock> tradedStocks) {
+        // Power of two capacity, at most half full
+        final int capacity = Integer.highestOneBit(Math.max(1, tradedStocks.size()) * 4 - 1);
+        symbols = new byte[capacity][];
+        stocks = new Stock[capacity];
+        mask = capacity - 1;
+
+        for (Stock stock : tradedStocks) {
+            final byte[] symbol = stock.getSymbol().getBytes(StandardCharsets.US_ASCII);
+            int slot = hash(ByteBuffer.wrap(symbol), 0, symbol.length) & mask;
+            while (symbols[slot] != null) {
+                checkArgument(!stock.getSymbol().equals(stocks[slot].getSymbol()), "Duplicated symbol: %s", stock.getSymbol());
+                slot = (slot + 1) & mask;
+            }
+            symbols[slot] = symbol;
+            stocks[slot] = stock;
+        }
+    }
+
+    /**
+     * @param buffer buffer holding the symbol
+     * @param from position of the first byte of the symbol (inclusive)
+     * @param to position of the last byte of the symbol (exclusive)
+     *
+     * @return the stock with the given symbol, or {@code null} if there is none
+     */
+    Stock find(ByteBuffer buffer, int from, int to) {
+        for (int slot = hash(buffer, from, to) & mask; symbols[slot] != null; slot = (slot + 1) & mask) {
+            if (matches(symbols[slot], buffer, from, to)) {
+                return stocks[slot];
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(byte[] symbol, ByteBuffer buffer, int from, int to) {
+        if (symbol.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < symbol.length; i++) {
+            if (symbol[i] != buffer.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(ByteBuffer buffer, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        // Spreads the higher bits, as the table only uses the lower ones
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,285 @@
+package com.jpmorgan.sssm.feed;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.jpmorgan.sssm.model.MutableTrade;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.TradeIndicator;
+import com.jpmorgan.sssm.repository.StockRepository;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.jpmorgan.sssm.math.FixedPointMath.CURRENCY_SCALE;
+
+/**
+ * Bulk loader for delimited trade files.
+ * <p>
+ * Each line of the file holds a trade:
+ * <pre>
+ * symbol,epoch milliseconds,quantity,indicator,price
+ * TEA,1462874400000,100,BUY,10.50
+ * </pre>
+ * Indicators may be abbreviated to {@code B} and {@code S}. Prices with more than two decimal places are rounded half even.
+ * Empty lines and lines starting with {@code #} are ignored.
+ * <p>
+ * Files are memory-mapped in windows, so that files larger than 2GB can be loaded, and fields are parsed straight from the
+ * mapped bytes into scaled primitives: symbols are resolved against the known stocks without being decoded, prices are read
+ * as cents. Parsed trades are kept in reusable {@link MutableTrade} records and handed to the repository in batches through
+ * {@link StockRepository#recordAll(MutableTrade[], int)}, so that parsing a line allocates nothing.
+ * <p>
+ * Loaders may be shared between threads loading different files.
+ *
+ * @author Anthony Accioly
+ */
+public final class TradeFileLoader {
+
+    public static final char DEFAULT_DELIMITER = ',';
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    /**
+     * Size of each memory-mapped window (64MB). Lines can't be longer than a window.
+     */
+    private static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+
+    private static final TradeIndicator[] INDICATORS = TradeIndicator.values();
+
+    private final StockRepository stockRepository;
+    private final SymbolTable symbolTable;
+    private final byte delimiter;
+    private final int batchSize;
+    private final int windowSize;
+
+    /**
+     * Creates a loader for comma delimited files.
+     *
+     * @param stockRepository the repository trades are recorded into
+     * @param stocks every stock that may appear in the files
+     */
+    public TradeFileLoader(@NonNull StockRepository stockRepository, @NonNull Collection<Stock> stocks) {
+        this(stockRepository, stocks, DEFAULT_DELIMITER, DEFAULT_BATCH_SIZE);
+    }
+
+    public TradeFileLoader(@NonNull StockRepository stockRepository, @NonNull Collection<Stock> stocks, char delimiter, int batchSize) {
+        this(stockRepository, stocks, delimiter, batchSize, DEFAULT_WINDOW_SIZE);
+    }
+
+    @VisibleForTesting
+    TradeFileLoader(@NonNull StockRepository stockRepository, @NonNull Collection<Stock> stocks, char delimiter, int batchSize,
+                    int windowSize) {
+        checkArgument(delimiter < 0x80 && delimiter != '\n' && delimiter != '\r' && delimiter != '.'
+                && !Character.isLetterOrDigit(delimiter), "Delimiter has to be an ASCII symbol");
+        checkArgument(batchSize > 0, "Batches have to hold at least one trade");
+        checkArgument(windowSize > 0, "Windows have to hold at least one byte");
+
+        this.stockRepository = stockRepository;
+        this.symbolTable = new SymbolTable(stocks);
+        this.delimiter = (byte) delimiter;
+        this.batchSize = batchSize;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Loads every trade of a file into the repository.
+     * <p>
+     * Loading stops at the first malformed line. Trades of previous batches are left in the repository.
+     *
+     * @param file the delimited trade file
+     *
+     * @return the number of trades loaded
+     *
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if a line is malformed, refers to an unknown stock or holds an invalid trade
+     */
+    public long load(@NonNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final FileParser parser = new FileParser();
+            final long size = channel.size();
+
+            long position = 0;
+            while (position < size) {
+                final int length = (int) Math.min(windowSize, size - position);
+                final ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                final int consumed = parser.parseLines(window, length, position + length == size);
+                checkArgument(consumed > 0, "Line %s is longer than %s bytes", parser.lineNumber + 1, windowSize);
+                // The window following a partial line starts at the beginning of that line
+                position += consumed;
+            }
+            parser.flush();
+            return parser.loaded;
+        }
+    }
+
+    /**
+     * Parsing state of a single file.
+     */
+    private final class FileParser {
+        /**
+         * Reusable records, only the first {@link #batched} hold trades of the current batch
+         */
+        private final MutableTrade[] batch = new MutableTrade[batchSize];
+        private int batched = 0;
+        private long lineNumber = 0;
+        private long loaded = 0;
+
+        /**
+         * @return number of bytes consumed, up to the end of the last complete line in the window
+         */
+        private int parseLines(ByteBuffer window, int length, boolean lastWindow) {
+            int lineStart = 0;
+            for (int index = 0; index < length; index++) {
+                if (window.get(index) == '\n') {
+                    parseLine(window, lineStart, index);
+                    lineStart = index + 1;
+                }
+            }
+            if (lastWindow && lineStart < length) {
+                parseLine(window, lineStart, length);
+                lineStart = length;
+            }
+            return lineStart;
+        }
+
+        private void parseLine(ByteBuffer line, int from, int to) {
+            lineNumber++;
+            final int end = to > from && line.get(to - 1) == '\r' ? to - 1 : to;
+            if (end == from || line.get(from) == '#') {
+                return;
+            }
+
+            final int symbolEnd = nextDelimiter(line, from, end, "timestamp");
+            final int timestampEnd = nextDelimiter(line, symbolEnd + 1, end, "quantity");
+            final int quantityEnd = nextDelimiter(line, timestampEnd + 1, end, "indicator");
+            final int indicatorEnd = nextDelimiter(line, quantityEnd + 1, end, "price");
+
+            final Stock stock = symbolTable.find(line, from, symbolEnd);
+            if (stock == null) {
+                throw new IllegalArgumentException("Unknown symbol at line " + lineNumber);
+            }
+            final long epochMilli = parseLong(line, symbolEnd + 1, timestampEnd, "timestamp");
+            final long quantity = parseLong(line, timestampEnd + 1, quantityEnd, "quantity");
+            if (quantity > Integer.MAX_VALUE) {
+                throw malformed("quantity");
+            }
+            final TradeIndicator indicator = parseIndicator(line, quantityEnd + 1, indicatorEnd);
+            final long priceInCents = parseCents(line, indicatorEnd + 1, end);
+
+            if (batch[batched] == null) {
+                batch[batched] = new MutableTrade();
+            }
+            try {
+                batch[batched].set(stock, epochMilli, (int) quantity, indicator, priceInCents);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid trade at line " + lineNumber, e);
+            }
+
+            if (++batched == batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (batched > 0) {
+                stockRepository.recordAll(batch, batched);
+                loaded += batched;
+                batched = 0;
+            }
+        }
+
+        private int nextDelimiter(ByteBuffer line, int from, int to, String missingField) {
+            for (int index = from; index < to; index++) {
+                if (line.get(index) == delimiter) {
+                    return index;
+                }
+            }
+            throw new IllegalArgumentException("Missing " + missingField + " at line " + lineNumber);
+        }
+
+        private long parseLong(ByteBuffer line, int from, int to, String field) {
+            if (from == to) {
+                throw malformed(field);
+            }
+            long value = 0;
+            for (int index = from; index < to; index++) {
+                final int digit = line.get(index) - '0';
+                if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                    throw malformed(field);
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        private TradeIndicator parseIndicator(ByteBuffer line, int from, int to) {
+            for (TradeIndicator indicator : INDICATORS) {
+                final String name = indicator.name();
+                // Either the full name or its first letter
+                boolean matches = (to - from == 1 || to - from == name.length()) && line.get(from) == name.charAt(0);
+                for (int index = 1; matches && index < to - from; index++) {
+                    matches = line.get(from + index) == name.charAt(index);
+                }
+                if (matches) {
+                    return indicator;
+                }
+            }
+            throw malformed("indicator");
+        }
+
+        /**
+         * Parses a decimal price, rounding it half even to cents.
+         */
+        private long parseCents(ByteBuffer line, int from, int to) {
+            long units = 0;
+            long cents = 0;
+            int fractionDigits = -1;
+            int roundingDigit = 0;
+            boolean sticky = false;
+            for (int index = from; index < to; index++) {
+                final byte character = line.get(index);
+                if (character == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                    continue;
+                }
+                final int digit = character - '0';
+                if (digit < 0 || digit > 9) {
+                    throw malformed("price");
+                }
+                if (fractionDigits < 0) {
+                    if (units > (Long.MAX_VALUE / 100 - 1 - digit) / 10) {
+                        throw malformed("price");
+                    }
+                    units = units * 10 + digit;
+                } else if (fractionDigits < CURRENCY_SCALE) {
+                    cents = cents * 10 + digit;
+                    fractionDigits++;
+                } else if (fractionDigits == CURRENCY_SCALE) {
+                    roundingDigit = digit;
+                    fractionDigits++;
+                } else {
+                    sticky |= digit != 0;
+                }
+            }
+            if (to - from <= (fractionDigits < 0 ? 0 : 1)) {
+                throw malformed("price");
+            }
+
+            for (int missing = Math.max(fractionDigits, 0); missing < CURRENCY_SCALE; missing++) {
+                cents *= 10;
+            }
+            long value = units * 100 + cents;
+            if (roundingDigit > 5 || (roundingDigit == 5 && (sticky || (value & 1) == 1))) {
+                value++;
+            }
+            return value;
+        }
+
+        private IllegalArgumentException malformed(String field) {
+            return new IllegalArgumentException("Malformed " + field + " at line " + lineNumber);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.jpmorgan.sssm.load;
+
+import com.jpmorgan.sssm.math.QuantileSketch;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Immutable latency percentiles of an operation, in microseconds.
+ *
+ * @author Anthony Accioly
+ */
+@Value
+public class LatencySummary {
+
+    private final long count;
+    private final double p50;
+    private final double p90;
+    private final double p99;
+    private final double p999;
+    private final double max;
+
+    static LatencySummary of(@NonNull QuantileSketch microseconds) {
+        if (microseconds.getCount() == 0) {
+            return new LatencySummary(0, 0, 0, 0, 0, 0);
+        }
+        return new LatencySummary(microseconds.getCount(), microseconds.quantile(0.5), microseconds.quantile(0.9),
+                microseconds.quantile(0.99), microseconds.quantile(0.999), microseconds.quantile(1));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus", count, p50, p90, p99, p999, max);
+    }
+}
@@ -0,0 +1,239 @@
+package com.jpmorgan.sssm.load;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.jpmorgan.sssm.math.QuantileSketch;
+import com.jpmorgan.sssm.model.MutableTrade;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.repository.RepositoryMode;
+import com.jpmorgan.sssm.repository.StockRepository;
+import com.jpmorgan.sssm.repository.StockRepositoryInMemoryImpl;
+import com.jpmorgan.sssm.repository.StockRepositoryOffHeapImpl;
+import com.jpmorgan.sssm.service.StockMarketService;
+import com.jpmorgan.sssm.service.StockMarketServiceImpl;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.jpmorgan.sssm.model.TradeIndicator.BUY;
+import static com.jpmorgan.sssm.model.TradeIndicator.SELL;
+
+/**
+ * Synthetic market load generator and soak-test harness.
+ * <p>
+ * Writers record trades for a skewed {@link SymbolUniverse} at a target rate while readers concurrently query VWAP and the
+ * All Share Index. Operations are scheduled at fixed intervals (open loop), thus latencies include the time an operation
+ * waited behind a slow predecessor. Writers reuse a {@link MutableTrade}, so that the harness adds next to no garbage. The
+ * {@link LoadReport} adds throughput, heap growth and garbage collection time.
+ * <p>
+ * Run from the command line with {@code name=value} options named after the {@link LoadProfile} properties, plus
+ * {@code repository=in-memory|off-heap} and {@code mode=write-optimized|read-optimized|adaptive}, e.g.:
+ * <pre>
+ * mvn -q compile exec:java -Dexec.mainClass=com.jpmorgan.sssm.load.LoadGenerator -Dexec.args="tradesPerSecond=100000 duration=PT5M"
+ * </pre>
+ *
+ * @author Anthony Accioly
+ */
+@Slf4j
+public final class LoadGenerator {
+
+    private final LoadProfile profile;
+    private final StockRepository stockRepository;
+    private final StockMarketService stockMarketService;
+    private final SymbolUniverse universe;
+
+    public LoadGenerator(@NonNull LoadProfile profile, @NonNull StockRepository stockRepository) {
+        this.profile = profile;
+        this.stockRepository = stockRepository;
+        this.stockMarketService = new StockMarketServiceImpl(stockRepository);
+        this.universe = new SymbolUniverse(profile);
+    }
+
+    /**
+     * @return the stocks being traded, hot symbols first
+     */
+    public List<Stock> getStocks() {
+        return universe.getStocks();
+    }
+
+    /**
+     * Runs the load for the duration of the profile, blocking the calling thread.
+     *
+     * @return the measured throughput, latencies and memory behaviour
+     *
+     * @throws InterruptedException if interrupted while waiting for the load to finish
+     * @throws IllegalStateException if recording a trade or computing a metric failed
+     */
+    public LoadReport run() throws InterruptedException {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        final long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        final long collectionsBefore = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+        final long collectionTimeBefore = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+
+        final int readers = profile.getQueriesPerSecond() > 0 ? profile.getReaderThreads() : 0;
+        final ExecutorService executor = Executors.newFixedThreadPool(profile.getWriterThreads() + readers,
+                new ThreadFactoryBuilder().setNameFormat("load-generator-%d").setDaemon(true).build());
+        final long start = System.nanoTime();
+        final long end = start + profile.getDuration().toNanos();
+
+        final List<Future<Latencies>> workers = new ArrayList<>();
+        for (int writer = 0; writer < profile.getWriterThreads(); writer++) {
+            final int worker = writer;
+            workers.add(executor.submit((Callable<Latencies>) () -> write(worker, start, end)));
+        }
+        for (int reader = 0; reader < readers; reader++) {
+            final int worker = profile.getWriterThreads() + reader;
+            workers.add(executor.submit((Callable<Latencies>) () -> query(worker, start, end)));
+        }
+
+        final Latencies latencies = new Latencies();
+        try {
+            for (Future<Latencies> worker : workers) {
+                latencies.merge(worker.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load worker failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        final long heapAfter = memory.getHeapMemoryUsage().getUsed();
+        final long collectionsAfter = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+        final long collectionTimeAfter = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+
+        return new LoadReport(profile, Duration.ofNanos(elapsed), LatencySummary.of(latencies.record),
+                LatencySummary.of(latencies.volumeWeightedPrice), LatencySummary.of(latencies.allShareIndex),
+                heapAfter - heapBefore, collectionsAfter - collectionsBefore,
+                Duration.ofMillis(collectionTimeAfter - collectionTimeBefore));
+    }
+
+    private Latencies write(int worker, long start, long end) {
+        final SplittableRandom random = new SplittableRandom(profile.getSeed() * 31 + worker);
+        final long interval = intervalOf(profile.getTradesPerSecond(), profile.getWriterThreads());
+        final Latencies latencies = new Latencies();
+        final MutableTrade trade = new MutableTrade();
+
+        for (long scheduled = start + interval * worker / profile.getWriterThreads(); isRunning(scheduled, end); scheduled += interval) {
+            awaitUntil(scheduled);
+
+            final int rank = universe.pickRank(random);
+            final long referencePrice = universe.referencePriceInCents(rank);
+            // Trades within 2% of the reference price
+            final long priceInCents = Math.max(1, referencePrice + random.nextLong(-referencePrice / 50, referencePrice / 50 + 1));
+            stockRepository.record(trade.set(universe.stock(rank), System.currentTimeMillis(), random.nextInt(1, 1001),
+                    random.nextBoolean() ? BUY : SELL, priceInCents));
+
+            latencies.record.accept(microsecondsSince(scheduled));
+        }
+        return latencies;
+    }
+
+    private Latencies query(int worker, long start, long end) {
+        final SplittableRandom random = new SplittableRandom(profile.getSeed() * 31 + worker);
+        final long interval = intervalOf(profile.getQueriesPerSecond(), profile.getReaderThreads());
+        final int reader = worker - profile.getWriterThreads();
+        final Latencies latencies = new Latencies();
+
+        for (long scheduled = start + interval * reader / profile.getReaderThreads(); isRunning(scheduled, end); scheduled += interval) {
+            awaitUntil(scheduled);
+
+            if (random.nextDouble() < profile.getIndexQueryShare()) {
+                stockMarketService.allShareIndex();
+                latencies.allShareIndex.accept(microsecondsSince(scheduled));
+            } else {
+                stockMarketService.volumeWeightedStockPrice(universe.stock(universe.pickRank(random)));
+                latencies.volumeWeightedPrice.accept(microsecondsSince(scheduled));
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * Nanoseconds between operations of a single thread.
+     */
+    private static long intervalOf(int operationsPerSecond, int threads) {
+        return Math.max(1, 1_000_000_000L * threads / operationsPerSecond);
+    }
+
+    private static boolean isRunning(long scheduled, long end) {
+        // A thread falling behind its schedule stops at the end of the run rather than catching up
+        return scheduled < end && System.nanoTime() < end && !Thread.currentThread().isInterrupted();
+    }
+
+    private static void awaitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static double microsecondsSince(long scheduled) {
+        // Sketches only accept positive values
+        return Math.max(1, System.nanoTime() - scheduled) / 1_000.0;
+    }
+
+    /**
+     * Latency sketches owned by a single worker until merged.
+     */
+    private static final class Latencies {
+        private final QuantileSketch record = new QuantileSketch();
+        private final QuantileSketch volumeWeightedPrice = new QuantileSketch();
+        private final QuantileSketch allShareIndex = new QuantileSketch();
+
+        private void merge(Latencies other) {
+            record.merge(other.record);
+            volumeWeightedPrice.merge(other.volumeWeightedPrice);
+            allShareIndex.merge(other.allShareIndex);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final LoadProfile.LoadProfileBuilder builder = LoadProfile.builder();
+        boolean offHeap = false;
+        RepositoryMode mode = RepositoryMode.WRITE_OPTIMIZED;
+        for (String argument : args) {
+            final String[] option = argument.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Options have to be given as name=value: " + argument);
+            }
+            final String value = option[1];
+            switch (option[0]) {
+                case "symbols": builder.symbols(Integer.parseInt(value)); break;
+                case "preferredShare": builder.preferredShare(Double.parseDouble(value)); break;
+                case "skew": builder.skew(Double.parseDouble(value)); break;
+                case "tradesPerSecond": builder.tradesPerSecond(Integer.parseInt(value)); break;
+                case "queriesPerSecond": builder.queriesPerSecond(Integer.parseInt(value)); break;
+                case "indexQueryShare": builder.indexQueryShare(Double.parseDouble(value)); break;
+                case "writerThreads": builder.writerThreads(Integer.parseInt(value)); break;
+                case "readerThreads": builder.readerThreads(Integer.parseInt(value)); break;
+                case "duration": builder.duration(Duration.parse(value)); break;
+                case "seed": builder.seed(Long.parseLong(value)); break;
+                case "repository": offHeap = "off-heap".equals(value); break;
+                case "mode": mode = RepositoryMode.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_')); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option[0]);
+            }
+        }
+
+        final LoadProfile profile = builder.build();
+        final StockRepository stockRepository = offHeap ? StockRepositoryOffHeapImpl.create(mode) : StockRepositoryInMemoryImpl.create(mode);
+        log.info("Running {} against {} ({})", profile, stockRepository.getClass().getSimpleName(), mode);
+        final LoadReport report = new LoadGenerator(profile, stockRepository).run();
+        log.info("Load report:{}{}", System.lineSeparator(), report);
+    }
+}
@@ -0,0 +1,91 @@
+package com.jpmorgan.sssm.load;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.time.Duration;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Immutable description of a synthetic market load.
+ *
+ * @author Anthony Accioly
+ */
+@Value
+public class LoadProfile {
+
+    /**
+     * Number of stocks in the symbol universe
+     */
+    private final int symbols;
+    /**
+     * Share of preferred stocks in the symbol universe, between 0 and 1
+     */
+    private final double preferredShare;
+    /**
+     * Zipf exponent of the symbol popularity: 0 is uniform, ~1 lets a few hot symbols dominate
+     */
+    private final double skew;
+    /**
+     * Target rate of recorded trades, across every writer
+     */
+    private final int tradesPerSecond;
+    /**
+     * Target rate of VWAP and All Share Index queries, across every reader
+     */
+    private final int queriesPerSecond;
+    /**
+     * Share of queries computing the All Share Index rather than the VWAP of a single stock, between 0 and 1
+     */
+    private final double indexQueryShare;
+    private final int writerThreads;
+    private final int readerThreads;
+    @NonNull private final Duration duration;
+    /**
+     * Seed of the symbol universe and trade generators, so that runs can be reproduced
+     */
+    private final long seed;
+
+    @Builder
+    private LoadProfile(int symbols, double preferredShare, double skew, int tradesPerSecond, int queriesPerSecond,
+                        double indexQueryShare, int writerThreads, int readerThreads, @NonNull Duration duration, long seed) {
+        checkArgument(symbols > 0, "Universe has to have at least one symbol");
+        checkArgument(preferredShare >= 0 && preferredShare <= 1, "Preferred share has to be between 0 and 1");
+        checkArgument(skew >= 0, "Skew can't be negative");
+        checkArgument(tradesPerSecond > 0, "Trade rate has to be positive");
+        checkArgument(queriesPerSecond >= 0, "Query rate can't be negative");
+        checkArgument(indexQueryShare >= 0 && indexQueryShare <= 1, "Index query share has to be between 0 and 1");
+        checkArgument(writerThreads > 0, "Load has to have at least one writer");
+        checkArgument(readerThreads > 0 || queriesPerSecond == 0, "Queries need at least one reader");
+        checkArgument(!duration.isNegative() && !duration.isZero(), "Duration has to be positive");
+
+        this.symbols = symbols;
+        this.preferredShare = preferredShare;
+        this.skew = skew;
+        this.tradesPerSecond = tradesPerSecond;
+        this.queriesPerSecond = queriesPerSecond;
+        this.indexQueryShare = indexQueryShare;
+        this.writerThreads = writerThreads;
+        this.readerThreads = readerThreads;
+        this.duration = duration;
+        this.seed = seed;
+    }
+
+    /**
+     * Builder pre-populated with a moderate load: 100 symbols, 20k trades and 200 queries per second over 30 seconds.
+     */
+    public static class LoadProfileBuilder {
+        private int symbols = 100;
+        private double preferredShare = 0.2;
+        private double skew = 1.1;
+        private int tradesPerSecond = 20_000;
+        private int queriesPerSecond = 200;
+        private double indexQueryShare = 0.1;
+        private int writerThreads = 2;
+        private int readerThreads = 2;
+        private Duration duration = Duration.ofSeconds(30);
+        private long seed = 42;
+    }
+}
@@ -0,0 +1,63 @@
+package com.jpmorgan.sssm.load;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Immutable outcome of a load run.
+ * <p>
+ * Latencies are measured from the time each operation was scheduled rather than from when it actually started, so that a
+ * stalled system is not hidden by the generator falling behind its target rate.
+ *
+ * @author Anthony Accioly
+ */
+@Value
+public class LoadReport {
+
+    @NonNull private final LoadProfile profile;
+    @NonNull private final Duration elapsed;
+    @NonNull private final LatencySummary recordLatency;
+    @NonNull private final LatencySummary volumeWeightedPriceLatency;
+    @NonNull private final LatencySummary allShareIndexLatency;
+    /**
+     * Used heap after the run minus used heap before it, in bytes
+     */
+    private final long heapGrowth;
+    private final long garbageCollections;
+    @NonNull private final Duration garbageCollectionTime;
+
+    /**
+     * @return recorded trades per second
+     */
+    public double tradeThroughput() {
+        return perSecond(recordLatency.getCount());
+    }
+
+    /**
+     * @return VWAP and All Share Index queries per second
+     */
+    public double queryThroughput() {
+        return perSecond(volumeWeightedPriceLatency.getCount() + allShareIndexLatency.getCount());
+    }
+
+    private double perSecond(long operations) {
+        return operations * 1_000_000_000.0 / Math.max(1, elapsed.toNanos());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Elapsed: %s%n"
+                        + "Trades: %.0f/s (target %d/s)%n"
+                        + "Queries: %.0f/s (target %d/s)%n"
+                        + "Record latency: %s%n"
+                        + "VWAP latency: %s%n"
+                        + "All Share Index latency: %s%n"
+                        + "Heap growth: %,d bytes%n"
+                        + "GC: %d collections, %d ms",
+                elapsed, tradeThroughput(), profile.getTradesPerSecond(), queryThroughput(), profile.getQueriesPerSecond(),
+                recordLatency, volumeWeightedPriceLatency, allShareIndexLatency, heapGrowth, garbageCollections,
+                garbageCollectionTime.toMillis());
+    }
+}
@@ -0,0 +1,83 @@
+package com.jpmorgan.sssm.load;
+
+import com.google.common.collect.ImmutableList;
+import com.jpmorgan.sssm.model.Stock;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static com.jpmorgan.sssm.math.FixedPointMath.CURRENCY_SCALE;
+
+/**
+ * Synthetic universe of common and preferred stocks with Zipf distributed popularity.
+ * <p>
+ * The stock of rank {@code k} (starting at 1) is picked with probability proportional to {@code 1 / k^skew}, so that a few
+ * hot symbols dominate the flow of trades as they do around market open.
+ *
+ * @author Anthony Accioly
+ */
+final class SymbolUniverse {
+
+    @Getter private final List<Stock> stocks;
+    private final long[] referencePricesInCents;
+    private final double[] cumulativeProbabilities;
+
+    SymbolUniverse(@NonNull LoadProfile profile) {
+        final SplittableRandom random = new SplittableRandom(profile.getSeed());
+        final int size = profile.getSymbols();
+
+        final ImmutableList.Builder<Stock> builder = ImmutableList.builder();
+        referencePricesInCents = new long[size];
+        for (int rank = 0; rank < size; rank++) {
+            final String symbol = String.format("S%04d", rank + 1);
+            final BigDecimal parValue = BigDecimal.valueOf(random.nextInt(1, 11) * 50L);
+            final BigDecimal lastDividend = BigDecimal.valueOf(random.nextInt(0, 2500), CURRENCY_SCALE);
+            if (random.nextDouble() < profile.getPreferredShare()) {
+                final BigDecimal fixedDividend = BigDecimal.valueOf(random.nextInt(1, 11), 2);
+                builder.add(Stock.createPreferredStock(symbol, lastDividend, parValue, fixedDividend));
+            } else {
+                builder.add(Stock.createCommonStock(symbol, lastDividend, parValue));
+            }
+            referencePricesInCents[rank] = random.nextInt(100, 100_000);
+        }
+        stocks = builder.build();
+
+        cumulativeProbabilities = new double[size];
+        double total = 0;
+        for (int rank = 0; rank < size; rank++) {
+            total += 1 / Math.pow(rank + 1, profile.getSkew());
+            cumulativeProbabilities[rank] = total;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulativeProbabilities[rank] /= total;
+        }
+    }
+
+    /**
+     * @param random source of randomness owned by the calling thread
+     *
+     * @return the rank of a stock, hot symbols first
+     */
+    int pickRank(@NonNull SplittableRandom random) {
+        final int position = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        // Not found returns (-(insertion point) - 1); rounding errors may leave the last cumulative probability below 1
+        return Math.min(position >= 0 ? position : -position - 1, cumulativeProbabilities.length - 1);
+    }
+
+    Stock stock(int rank) {
+        return stocks.get(rank);
+    }
+
+    /**
+     * @param rank rank of the stock
+     *
+     * @return the price, in cents, the stock trades around
+     */
+    long referencePriceInCents(int rank) {
+        return referencePricesInCents[rank];
+    }
+}
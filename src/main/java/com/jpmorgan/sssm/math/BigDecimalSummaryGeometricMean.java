@@ -10,10 +10,15 @@ import java.math.BigDecimal;
 import java.util.function.Consumer;
 
 import static com.jpmorgan.sssm.math.FixedPointMath.MATH_CONTEXT;
+import static com.jpmorgan.sssm.math.FixedPointMath.ROUNDING_MODE;
 import static com.jpmorgan.sssm.math.FixedPointMath.checkArgumentGreaterThanOrEgual;
+import static com.jpmorgan.sssm.math.TieredMath.UNIT_ROUNDOFF;
 
 /**
  * A state object for collecting the average mean of a set of {@link java.math.BigDecimal}
+ * <p>
+ * Alongside the exact product, the sum of the logarithms of the values is kept in double precision so that
+ * {@link #geometricMean(int)} can usually skip the costly exact root, see {@link TieredMath}.
  *
  * @author Anthony Accioly
  */
@@ -22,8 +27,18 @@ import static com.jpmorgan.sssm.math.FixedPointMath.checkArgumentGreaterThanOrEg
 @AllArgsConstructor(access = AccessLevel.MODULE)
 public final class BigDecimalSummaryGeometricMean implements Consumer<BigDecimal> {
 
+    /**
+     * Bound of the error of the exact root relative to the geometric mean, due to the rounding of the product and of the
+     * iterations of the root, for geometric means of at least one
+     */
+    private static final double EXACT_ROOT_ERROR = 1e-27;
+
     private BigDecimal product = BigDecimal.ONE;
     private int count = 0;
+    @Getter(AccessLevel.NONE)
+    private double logSum = 0;
+    @Getter(AccessLevel.NONE)
+    private double absoluteLogSum = 0;
 
     /**
      * Records a new {@code {@link BigDecimal}} value into the summary information.
@@ -35,6 +50,9 @@ public final class BigDecimalSummaryGeometricMean implements Consumer<BigDecimal
         checkArgumentGreaterThanOrEgual("value", value, BigDecimal.ZERO);
         count++;
         product = product.multiply(value, MATH_CONTEXT);
+        final double log = TieredMath.ln(value);
+        logSum += log;
+        absoluteLogSum += Math.abs(log);
     }
 
     /**
@@ -45,6 +63,8 @@ public final class BigDecimalSummaryGeometricMean implements Consumer<BigDecimal
     public void combine(@NonNull BigDecimalSummaryGeometricMean other) {
         count += other.count;
         product = product.multiply(other.getProduct());
+        logSum += other.logSum;
+        absoluteLogSum += other.absoluteLogSum;
     }
 
     /**
@@ -57,4 +77,34 @@ public final class BigDecimalSummaryGeometricMean implements Consumer<BigDecimal
         return count != 0 ? FixedPointMath.nthRoot(count, product) : BigDecimal.ZERO;
     }
 
+    /**
+     * Returns the geometric mean of values recorded rounded to a given scale, or zero if no values have been recorded.
+     * <p>
+     * The mean is approximated as the exponential of the mean of the logarithms of the values, falling back to the exact
+     * root only if it is too close to a rounding boundary to tell how it rounds.
+     *
+     * @param scale scale of the result
+     *
+     * @return the same value as {@code geometricMean().setScale(scale, ROUNDING_MODE)}
+     */
+    public BigDecimal geometricMean(int scale) {
+        if (count == 0) {
+            return BigDecimal.ZERO.setScale(scale, ROUNDING_MODE);
+        }
+
+        // Not finite if any value is zero
+        if (Double.isFinite(logSum)) {
+            final double meanLog = logSum / count;
+            final double approximation = Math.exp(meanLog);
+            // Logarithms and their sum (see TieredMath.ln), the mean and the exponential, plus the error of the exact root
+            final double relativeError = UNIT_ROUNDOFF * (16 * (3 + absoluteLogSum / count) + absoluteLogSum + Math.abs(meanLog) + 2)
+                    + EXACT_ROOT_ERROR / Math.min(approximation, 1);
+            final BigDecimal rounded = TieredMath.round(approximation, relativeError, scale);
+            if (rounded != null) {
+                return rounded;
+            }
+        }
+        return geometricMean().setScale(scale, ROUNDING_MODE);
+    }
+
 }
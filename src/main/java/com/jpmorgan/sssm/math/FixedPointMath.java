@@ -31,6 +31,7 @@ public class FixedPointMath {
     public static final int PERCENTAGE_SCALE = 5;
 
     public static final BigDecimal MIN_VALUE = new BigDecimal("0.01");
+    public static final long MIN_VALUE_IN_CENTS = 1;
     private static final String MIN_VALUE_MESSAGE = "%s has to be equal or greater than %s";
 
     /**
@@ -48,6 +49,56 @@ public class FixedPointMath {
     public static <T extends Number, V extends Comparable<T>>  void checkArgumentGreaterThanOrEgual(String label, V left, T right) {
         checkArgument(left.compareTo(right) >= 0, MIN_VALUE_MESSAGE, label, right);
     }
+
+    /**
+     * Non-boxing variant of {@link #checkArgumentGreaterThanOrEgual(String, Comparable, Number)}. Nothing is allocated unless
+     * the check fails.
+     *
+     * @param label a label to describe the argument in the exception error message
+     * @param left the left element of the ordered pair of arguments
+     * @param right the right element of the ordered pair of arguments
+     *
+     * @throws IllegalArgumentException if {@code right} is less than {@code left}
+     */
+    public static void checkArgumentGreaterThanOrEgual(String label, int left, int right) {
+        if (left < right) {
+            throw new IllegalArgumentException(String.format(MIN_VALUE_MESSAGE, label, right));
+        }
+    }
+
+    /**
+     * Variant of {@link #checkArgumentGreaterThanOrEgual(String, Comparable, Number)} for BigDecimals that doesn't allocate
+     * unless the check fails.
+     *
+     * @param label a label to describe the argument in the exception error message
+     * @param left the left element of the ordered pair of arguments
+     * @param right the right element of the ordered pair of arguments
+     *
+     * @throws IllegalArgumentException if {@code right} is less than {@code left}
+     */
+    public static void checkArgumentGreaterThanOrEgual(String label, BigDecimal left, BigDecimal right) {
+        if (left.compareTo(right) < 0) {
+            throw new IllegalArgumentException(String.format(MIN_VALUE_MESSAGE, label, right));
+        }
+    }
+
+    /**
+     * Ensures that a monetary value given as a number of cents is greater than or equal to another one, without allocating
+     * unless the check fails.
+     *
+     * @param label a label to describe the argument in the exception error message
+     * @param leftInCents the left element of the ordered pair of arguments, scaled to {@link #CURRENCY_SCALE}
+     * @param rightInCents the right element of the ordered pair of arguments, scaled to {@link #CURRENCY_SCALE}
+     *
+     * @throws IllegalArgumentException if {@code right} is less than {@code left}. The message states {@code right} as a
+     * decimal, e.g., 0.01.
+     */
+    public static void checkCentsGreaterThanOrEgual(String label, long leftInCents, long rightInCents) {
+        if (leftInCents < rightInCents) {
+            throw new IllegalArgumentException(String.format(MIN_VALUE_MESSAGE, label, BigDecimal.valueOf(rightInCents, CURRENCY_SCALE)));
+        }
+    }
+
     /**
      * Returns the correctly rounded positive square root of a BigDecimal value.
      *
@@ -0,0 +1,152 @@
+package com.jpmorgan.sssm.math;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.function.DoubleConsumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A mergeable streaming sketch for approximate quantiles of positive values with relative error guarantees.
+ * <p>
+ * Values are counted in logarithmically sized buckets, where bucket {@code i} holds values in
+ * {@code (gamma^(i-1), gamma^i]} and {@code gamma = (1 + accuracy) / (1 - accuracy)}. Any quantile is then estimated within
+ * {@code accuracy} of the true value. Memory is bounded by {@code maxBuckets}: when exceeded, the lowest buckets are
+ * collapsed, trading accuracy of the lowest quantiles for a constant footprint. Sketches with the same accuracy can be
+ * merged, e.g., to combine time buckets.
+ *
+ * @author Anthony Accioly
+ * @see <a href="https://arxiv.org/abs/1908.10693">DDSketch: A Fast and Fully-Mergeable Quantile Sketch with Relative-Error Guarantees</a>
+ */
+public final class QuantileSketch implements DoubleConsumer {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    private static final int INITIAL_BUCKETS = 64;
+
+    @Getter private final double relativeAccuracy;
+    private final int maxBuckets;
+    private final double gamma;
+    private final double logGamma;
+
+    private long[] counts = new long[0];
+    /**
+     * Bucket index of {@code counts[0]}
+     */
+    private int offset = 0;
+    private int minIndex = 0;
+    private int maxIndex = 0;
+    @Getter private long count = 0;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        checkArgument(relativeAccuracy > 0 && relativeAccuracy < 1, "Relative accuracy has to be between 0 and 1");
+        checkArgument(maxBuckets > 0, "Sketch has to have at least one bucket");
+
+        this.relativeAccuracy = relativeAccuracy;
+        this.maxBuckets = maxBuckets;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Records a new value into the sketch.
+     *
+     * @param value the input value, has to be greater than zero.
+     */
+    @Override
+    public void accept(double value) {
+        checkArgument(value > 0, "Only positive values can be sketched");
+        add(bucketIndexOf(value), 1);
+    }
+
+    /**
+     * Combines the state of another {@code QuantileSketch} into this one.
+     *
+     * @param other another {@code QuantileSketch} with the same relative accuracy
+     */
+    public void merge(@NonNull QuantileSketch other) {
+        checkArgument(other.relativeAccuracy == relativeAccuracy, "Only sketches with the same accuracy can be merged");
+        checkArgument(other != this, "A sketch can't be merged into itself");
+        for (int index = other.minIndex; other.count > 0 && index <= other.maxIndex; index++) {
+            final long bucketCount = other.counts[index - other.offset];
+            if (bucketCount != 0) {
+                add(index, bucketCount);
+            }
+        }
+    }
+
+    /**
+     * Estimates the value at a given quantile.
+     *
+     * @param quantile the quantile, between 0 (minimum) and 1 (maximum), e.g., 0.5 for the median
+     *
+     * @return an estimate within the relative accuracy of the sketch of the value at the quantile
+     *
+     * @throws IllegalStateException if no values were recorded
+     */
+    public double quantile(double quantile) {
+        checkArgument(quantile >= 0 && quantile <= 1, "Quantile has to be between 0 and 1");
+        checkState(count > 0, "Can't estimate quantiles of an empty sketch");
+
+        final long rank = (long) (quantile * (count - 1));
+        long seen = counts[minIndex - offset];
+        int index = minIndex;
+        while (seen <= rank && index < maxIndex) {
+            seen += counts[++index - offset];
+        }
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private int bucketIndexOf(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    private void add(int index, long increment) {
+        if (count == 0) {
+            if (counts.length == 0) {
+                counts = new long[Math.min(INITIAL_BUCKETS, maxBuckets)];
+            }
+            offset = index;
+            minIndex = index;
+            maxIndex = index;
+        }
+
+        final int newMaxIndex = Math.max(maxIndex, index);
+        // Lowest buckets are collapsed when the sketch grows over the maximum number of buckets
+        final int newMinIndex = Math.max(Math.min(minIndex, index), newMaxIndex - maxBuckets + 1);
+        if (newMinIndex < offset || newMaxIndex >= offset + counts.length || newMinIndex > minIndex) {
+            rebuild(newMinIndex, newMaxIndex);
+        }
+        minIndex = newMinIndex;
+        maxIndex = newMaxIndex;
+
+        counts[Math.max(index, minIndex) - offset] += increment;
+        count += increment;
+    }
+
+    private void rebuild(int newMinIndex, int newMaxIndex) {
+        final int used = newMaxIndex - newMinIndex + 1;
+        final int length = Math.max(used, Math.min(maxBuckets, 2 * counts.length));
+        // Leaves room to grow in both directions
+        final int newOffset = newMinIndex - (length - used) / 2;
+
+        final long[] rebuilt = new long[length];
+        for (int index = minIndex; index <= maxIndex; index++) {
+            rebuilt[Math.max(index, newMinIndex) - newOffset] += counts[index - offset];
+        }
+        counts = rebuilt;
+        offset = newOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch(relativeAccuracy=" + relativeAccuracy + ", count=" + count + ", buckets=" + (count > 0 ? maxIndex - minIndex + 1 : 0) + ")";
+    }
+}
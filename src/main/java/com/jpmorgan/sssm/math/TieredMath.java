@@ -0,0 +1,106 @@
+package com.jpmorgan.sssm.math;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.math.BigDecimal;
+
+import static com.jpmorgan.sssm.math.FixedPointMath.MATH_CONTEXT;
+import static com.jpmorgan.sssm.math.FixedPointMath.ROUNDING_MODE;
+
+/**
+ * Precision-tiered evaluation of values rounded to a few decimal places.
+ * <p>
+ * Results are first computed in double precision along with a rigorous bound of their error. Unless the exact result may
+ * lie within that bound of a rounding boundary (i.e., half way between two values at the target scale), the double result
+ * rounds to the same value as the exact one and is returned straight away. Otherwise the computation falls back to
+ * {@link BigDecimal} with {@link FixedPointMath#MATH_CONTEXT}. Either way results are identical to the exact computation,
+ * while the fallback is only taken for results on, or within about 10<sup>-15</sup> (relative) of, a rounding boundary.
+ *
+ * @author Anthony Accioly
+ */
+@UtilityClass
+public class TieredMath {
+
+    /**
+     * Unit roundoff of double precision (2<sup>-53</sup>)
+     */
+    static final double UNIT_ROUNDOFF = 0x1p-53;
+
+    private static final double LN_10 = Math.log(10);
+    /**
+     * Largest scaled value whose rounding is computed exactly in double precision (2<sup>52</sup>)
+     */
+    private static final double MAX_SCALED = 0x1p52;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13,
+            1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Divides two decimals, rounding the quotient to a given scale.
+     *
+     * @param dividend value to be divided
+     * @param divisor value by which the dividend is divided, different than zero
+     * @param scale scale of the quotient, from 0 to 22
+     *
+     * @return the same value and scale as {@code dividend.divide(divisor, MATH_CONTEXT).setScale(scale, ROUNDING_MODE)}
+     *
+     * @throws ArithmeticException if the divisor is zero
+     */
+    public static BigDecimal divide(@NonNull BigDecimal dividend, @NonNull BigDecimal divisor, int scale) {
+        final double dividendApproximation = dividend.doubleValue();
+        final double divisorApproximation = divisor.doubleValue();
+        // Both conversions and the division add up to 3 roundings, unless precision was lost to subnormal numbers
+        final BigDecimal rounded = isNormalOrZero(dividendApproximation) && isNormalOrZero(divisorApproximation) && divisor.signum() != 0
+                ? round(dividendApproximation / divisorApproximation, 3 * UNIT_ROUNDOFF, scale) : null;
+
+        return rounded != null ? rounded : dividend.divide(divisor, MATH_CONTEXT).setScale(scale, ROUNDING_MODE);
+    }
+
+    /**
+     * Rounds an approximation to a given scale, provided it rounds to the same value as the exact result it approximates.
+     *
+     * @param approximation non-negative approximation of the exact result
+     * @param relativeError bound of the error of the approximation relative to it, excluding the error of scaling it
+     * @param scale scale of the result, from 0 to 22
+     *
+     * @return the exact result rounded half even to the scale, or {@code null} if it can't be told from the approximation
+     */
+    static BigDecimal round(double approximation, double relativeError, int scale) {
+        if (scale < 0 || scale >= POWERS_OF_TEN.length) {
+            return null;
+        }
+        final double scaled = approximation * POWERS_OF_TEN[scale];
+        if (!(scaled >= 0 && scaled < MAX_SCALED) || (scaled != 0 && scaled < Double.MIN_NORMAL)) {
+            return null;
+        }
+
+        // Scaling adds a rounding, the bound is doubled for its own roundings
+        final double error = 2 * (relativeError + UNIT_ROUNDOFF) * scaled;
+        final double floor = Math.floor(scaled);
+        // Exact (Sterbenz lemma), as is the distance to the boundary
+        final double fraction = scaled - floor;
+        // Negated, so that NaN bounds fall back as well
+        if (!(Math.abs(fraction - 0.5) > error)) {
+            return null;
+        }
+        return BigDecimal.valueOf((long) floor + (fraction > 0.5 ? 1 : 0), scale);
+    }
+
+    private static boolean isNormalOrZero(double value) {
+        return value == 0 || Double.isFinite(value) && Math.abs(value) >= Double.MIN_NORMAL;
+    }
+
+    /**
+     * Natural logarithm of a positive decimal of any magnitude, including those beyond the range of {@code double}.
+     *
+     * @param value a non-negative value
+     *
+     * @return the logarithm, negative infinity for zero. Its absolute error is below {@code 16 * UNIT_ROUNDOFF * (3 + |ln value|)}
+     */
+    static double ln(@NonNull BigDecimal value) {
+        // value = mantissa * 10^exponent, mantissa in [0.1, 1)
+        final int exponent = value.precision() - value.scale();
+        final double mantissa = value.scaleByPowerOfTen(-exponent).doubleValue();
+        return Math.log(mantissa) + exponent * LN_10;
+    }
+}
@@ -1,15 +1,14 @@
 package com.jpmorgan.sssm.model;
 
+import com.jpmorgan.sssm.math.TieredMath;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.Value;
 
 import java.math.BigDecimal;
 
-import static com.jpmorgan.sssm.math.FixedPointMath.MATH_CONTEXT;
 import static com.jpmorgan.sssm.math.FixedPointMath.MIN_VALUE;
 import static com.jpmorgan.sssm.math.FixedPointMath.PERCENTAGE_SCALE;
-import static com.jpmorgan.sssm.math.FixedPointMath.ROUNDING_MODE;
 import static com.jpmorgan.sssm.math.FixedPointMath.checkArgumentGreaterThanOrEgual;
 
 /**
@@ -29,8 +28,7 @@ final class CommonStock extends Stock {
     public final BigDecimal dividendYield(@NonNull BigDecimal price) {
         checkArgumentGreaterThanOrEgual("Price", price, MIN_VALUE);
 
-        return getLastDividend().divide(price, MATH_CONTEXT)
-                .setScale(PERCENTAGE_SCALE, ROUNDING_MODE)
+        return TieredMath.divide(getLastDividend(), price, PERCENTAGE_SCALE)
                 .stripTrailingZeros();
     }
 }
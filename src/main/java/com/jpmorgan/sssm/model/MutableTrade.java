@@ -0,0 +1,95 @@
+package com.jpmorgan.sssm.model;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static com.jpmorgan.sssm.math.FixedPointMath.CURRENCY_SCALE;
+import static com.jpmorgan.sssm.math.FixedPointMath.MIN_VALUE_IN_CENTS;
+import static com.jpmorgan.sssm.math.FixedPointMath.checkArgumentGreaterThanOrEgual;
+import static com.jpmorgan.sssm.math.FixedPointMath.checkCentsGreaterThanOrEgual;
+
+/**
+ * Reusable, mutable trade record for allocation-free ingestion.
+ * <p>
+ * Feed handlers keep one instance per thread and {@link #set} it for every incoming trade. Values are validated with the
+ * same rules as {@link Trade}, but are kept as primitives (timestamp as epoch second and nanos, price in cents) so that
+ * neither validating nor recording it allocates. An immutable {@link Trade} is only materialized by {@link #toTrade()}.
+ * <p>
+ * Not thread safe. Repositories must not keep references to instances after recording them.
+ *
+ * @author Anthony Accioly
+ */
+@Getter
+@ToString
+public final class MutableTrade {
+
+    private static final int NANOS_PER_MILLI = 1_000_000;
+
+    private Stock stock;
+    private long epochSecond;
+    private int nanos;
+    private int quantity;
+    private TradeIndicator indicator;
+    private long priceInCents;
+
+    /**
+     * Replaces every value of the record, after validating them.
+     *
+     * @param stock the traded stock
+     * @param epochSecond seconds of the timestamp since the epoch
+     * @param nanos nanoseconds of the timestamp within the second, from 0 to 999,999,999
+     * @param quantity number of shares, at least 1
+     * @param indicator buy or sell
+     * @param priceInCents price scaled to {@link com.jpmorgan.sssm.math.FixedPointMath#CURRENCY_SCALE}, at least 1
+     *
+     * @return this record
+     *
+     * @throws IllegalArgumentException if any value is invalid, in which case the record is left untouched
+     */
+    public MutableTrade set(@NonNull Stock stock, long epochSecond, int nanos, int quantity, @NonNull TradeIndicator indicator,
+                            long priceInCents) {
+        if (epochSecond < Instant.MIN.getEpochSecond() || epochSecond > Instant.MAX.getEpochSecond()) {
+            throw new IllegalArgumentException("Timestamp is out of the supported range");
+        }
+        if (nanos < 0 || nanos >= 1_000_000_000) {
+            throw new IllegalArgumentException("Nanos have to be within a second");
+        }
+        checkArgumentGreaterThanOrEgual("Quantity", quantity, 1);
+        checkCentsGreaterThanOrEgual("Price", priceInCents, MIN_VALUE_IN_CENTS);
+
+        this.stock = stock;
+        this.epochSecond = epochSecond;
+        this.nanos = nanos;
+        this.quantity = quantity;
+        this.indicator = indicator;
+        this.priceInCents = priceInCents;
+        return this;
+    }
+
+    /**
+     * Replaces every value of the record with a timestamp in epoch milliseconds, e.g., from {@link System#currentTimeMillis()}.
+     *
+     * @see #set(Stock, long, int, int, TradeIndicator, long)
+     */
+    public MutableTrade set(@NonNull Stock stock, long epochMilli, int quantity, @NonNull TradeIndicator indicator, long priceInCents) {
+        return set(stock, Math.floorDiv(epochMilli, 1000), (int) Math.floorMod(epochMilli, 1000) * NANOS_PER_MILLI, quantity,
+                indicator, priceInCents);
+    }
+
+    /**
+     * @return a new immutable trade with the values of this record
+     *
+     * @throws IllegalStateException if the record was never set
+     */
+    public Trade toTrade() {
+        if (stock == null) {
+            throw new IllegalStateException("Trade record is empty");
+        }
+        return Trade.createOrder(stock, Instant.ofEpochSecond(epochSecond, nanos), quantity, indicator,
+                BigDecimal.valueOf(priceInCents, CURRENCY_SCALE));
+    }
+}
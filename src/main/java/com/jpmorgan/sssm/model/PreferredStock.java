@@ -1,5 +1,6 @@
 package com.jpmorgan.sssm.model;
 
+import com.jpmorgan.sssm.math.TieredMath;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.Value;
@@ -18,7 +19,7 @@ import static com.jpmorgan.sssm.math.FixedPointMath.checkArgumentGreaterThanOrEg
  * @author Anthony Accioly
  */
 @Value
-@EqualsAndHashCode(callSuper = true)
+@EqualsAndHashCode(callSuper = true, exclude = "fixedDividend")
 final class PreferredStock extends Stock {
 
     @NonNull private final BigDecimal fixedDividend;
@@ -33,8 +34,6 @@ final class PreferredStock extends Stock {
     public BigDecimal dividendYield(BigDecimal price) {
         checkArgumentGreaterThanOrEgual("Price", price, MIN_VALUE);
 
-        return fixedDividend.multiply(getParValue(), MATH_CONTEXT)
-                .divide(price, MATH_CONTEXT)
-                .setScale(PERCENTAGE_SCALE, ROUNDING_MODE);
+        return TieredMath.divide(fixedDividend.multiply(getParValue(), MATH_CONTEXT), price, PERCENTAGE_SCALE);
     }
 }
@@ -1,13 +1,14 @@
 package com.jpmorgan.sssm.model;
 
+import com.jpmorgan.sssm.math.TieredMath;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 
 import java.math.BigDecimal;
 
 import static com.google.common.base.Preconditions.checkState;
 import static com.jpmorgan.sssm.math.FixedPointMath.CURRENCY_SCALE;
-import static com.jpmorgan.sssm.math.FixedPointMath.MATH_CONTEXT;
 import static com.jpmorgan.sssm.math.FixedPointMath.MIN_VALUE;
 import static com.jpmorgan.sssm.math.FixedPointMath.PERCENTAGE_SCALE;
 import static com.jpmorgan.sssm.math.FixedPointMath.ROUNDING_MODE;
@@ -16,10 +17,16 @@ import static java.math.BigDecimal.ZERO;
 
 /**
  * A generic immutable representation of a capital stock.
+ * <p>
+ * Stocks are identified by their symbol. Dividends and par value are reference data that may change over the life of the
+ * stock (see {@link com.jpmorgan.sssm.repository.StockReferenceRepository}), so two versions of the same stock are equal
+ * and key the same trade history. Dividend yield and P/E Ratio are computed with the reference data of the instance they
+ * are called on; stock repositories return the current version of each stock, as published in their reference data.
  *
  * @author Anthony Accioly
  */
 @Data
+@EqualsAndHashCode(of = "symbol")
 public abstract class Stock {
 
     public static Stock createCommonStock(String symbol, BigDecimal lastDividend, BigDecimal parValue) {
@@ -78,8 +85,7 @@ public abstract class Stock {
         checkArgumentGreaterThanOrEgual("Price", price, MIN_VALUE);
         checkState(lastDividend.compareTo(ZERO) > 0, "No reported dividends for last period, can't compute PE/Ratio");
 
-        return price.divide(lastDividend, MATH_CONTEXT)
-                .setScale(PERCENTAGE_SCALE, ROUNDING_MODE)
+        return TieredMath.divide(price, lastDividend, PERCENTAGE_SCALE)
                 .stripTrailingZeros();
     }
 
@@ -34,6 +34,11 @@ public final class Trade {
         return new Trade(stock, now(), quantity, SELL, price);
     }
 
+    /**
+     * The traded stock, as given when the trade was created. Trades read from a stock repository hold the current version
+     * published in its {@link com.jpmorgan.sssm.repository.StockReferenceRepository} instead. When none was published,
+     * trades stored without their stock (e.g., off-heap) hold the version of the first trade recorded for the symbol.
+     */
     @NonNull private final Stock stock;
     @NonNull private final Instant timestamp;
     private final int quantity;
@@ -0,0 +1,261 @@
+package com.jpmorgan.sssm.repository;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.jpmorgan.sssm.model.MutableTrade;
+import com.jpmorgan.sssm.model.Trade;
+import lombok.NonNull;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decorator maintaining {@link RunningTotals} alongside the versions of a chain, for the read-optimized and adaptive
+ * {@link RepositoryMode}s.
+ * <p>
+ * Each published version pairs a version of the underlying chain with its totals, so that snapshots see totals consistent
+ * with their trades. In order trades add a single position to the totals; late trades recompute the totals after them.
+ * <p>
+ * In adaptive mode totals are only kept while the stock is read often. Every {@link #DECISION_PERIOD} writes or reads, the
+ * chain starts keeping totals if there was at least one aggregate read for every {@link #READS_TO_INDEX} writes, and drops
+ * them if there was less than one for every {@link #READS_TO_DROP} writes. The gap between both ratios keeps stocks near
+ * the threshold from switching back and forth.
+ * <p>
+ * Readers never wait for writers: a reader reaching the decision period publishes its decision by swapping the version it
+ * read for the same version with or without totals. Writers publish with a swap as well and, if a reader decided meanwhile,
+ * abide by its decision.
+ *
+ * @author Anthony Accioly
+ */
+final class AggregatingTradeChain implements VersionedTradeChain {
+
+    static final int DECISION_PERIOD = 1024;
+    static final int READS_TO_INDEX = 8;
+    static final int READS_TO_DROP = 32;
+
+    private final VersionedTradeChain delegate;
+    private final boolean adaptive;
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    /**
+     * Replaced by writers, holding the monitor of the chain, and by readers deciding whether to keep totals
+     */
+    private final AtomicReference<AggregatedVersion> current;
+
+    AggregatingTradeChain(@NonNull VersionedTradeChain delegate, boolean adaptive) {
+        this.delegate = delegate;
+        this.adaptive = adaptive;
+        this.current = new AtomicReference<>(new AggregatedVersion(delegate.current(), adaptive ? null : RunningTotals.EMPTY));
+    }
+
+    @Override
+    public TimelineVersion current() {
+        return current.get();
+    }
+
+    /**
+     * @return {@code true} if the latest version keeps running totals
+     */
+    @VisibleForTesting
+    boolean isAggregating() {
+        return current.get().totals != null;
+    }
+
+    @Override
+    public synchronized void insert(@NonNull Trade trade, long sequence) {
+        final AggregatedVersion previous = current.get();
+        final Instant timestamp = trade.getTimestamp();
+        // Position of the trade, needed only if it is late
+        final int position = previous.totals == null || previous.totals.isInOrder(timestamp.getEpochSecond(), timestamp.getNano())
+                ? previous.size() : previous.firstTradeAfter(timestamp);
+        delegate.insert(trade, sequence);
+
+        final RunningTotals totals;
+        if (previous.totals == null) {
+            totals = null;
+        } else if (position == previous.size()) {
+            totals = appended(previous.totals, trade, timestamp);
+        } else {
+            totals = previous.totals.updated(delegate.current(), position);
+        }
+        publish(previous, totals, 1);
+    }
+
+    @Override
+    public synchronized void insert(@NonNull MutableTrade trade, long sequence) {
+        final AggregatedVersion previous = current.get();
+        final boolean inOrder = previous.totals == null || previous.totals.isInOrder(trade.getEpochSecond(), trade.getNanos());
+        final int position = inOrder ? previous.size()
+                : previous.firstTradeAfter(Instant.ofEpochSecond(trade.getEpochSecond(), trade.getNanos()));
+        delegate.insert(trade, sequence);
+
+        final RunningTotals totals;
+        if (previous.totals == null) {
+            totals = null;
+        } else if (inOrder) {
+            totals = previous.totals.appended(trade.getEpochSecond(), trade.getNanos(), trade.getQuantity(), trade.getPriceInCents());
+        } else {
+            totals = previous.totals.updated(delegate.current(), position);
+        }
+        publish(previous, totals, 1);
+    }
+
+    @Override
+    public synchronized void insertAll(@NonNull List<Trade> trades, @NonNull long[] sequences) {
+        final AggregatedVersion previous = current.get();
+        int position = previous.size();
+        if (previous.totals != null) {
+            for (Trade trade : trades) {
+                position = Math.min(position, previous.firstTradeAfter(trade.getTimestamp()));
+            }
+        }
+        delegate.insertAll(trades, sequences);
+
+        publish(previous, previous.totals == null ? null : previous.totals.updated(delegate.current(), position), trades.size());
+    }
+
+    @Override
+    public synchronized void insertRecords(@NonNull List<MutableTrade> trades, long firstSequence) {
+        final AggregatedVersion previous = current.get();
+        // Totals after appending the records, or null once one of them is late or the totals overflow
+        RunningTotals appended = previous.totals;
+        for (int index = 0; appended != null && index < trades.size(); index++) {
+            final MutableTrade trade = trades.get(index);
+            appended = appended.isInOrder(trade.getEpochSecond(), trade.getNanos())
+                    ? appended.appended(trade.getEpochSecond(), trade.getNanos(), trade.getQuantity(), trade.getPriceInCents()) : null;
+        }
+        int position = previous.size();
+        if (previous.totals != null && appended == null) {
+            for (MutableTrade trade : trades) {
+                position = Math.min(position, previous.firstTradeAfter(Instant.ofEpochSecond(trade.getEpochSecond(), trade.getNanos())));
+            }
+        }
+        delegate.insertRecords(trades, firstSequence);
+
+        final RunningTotals totals;
+        if (previous.totals == null) {
+            totals = null;
+        } else if (appended != null) {
+            totals = appended;
+        } else {
+            totals = previous.totals.updated(delegate.current(), position);
+        }
+        publish(previous, totals, trades.size());
+    }
+
+    /**
+     * Publishes the latest version of the underlying chain with its totals, deciding whether to keep totals in adaptive
+     * mode. Called with the monitor held.
+     *
+     * @param previous the version the totals were computed from
+     */
+    private void publish(AggregatedVersion previous, RunningTotals totals, int inserted) {
+        final TimelineVersion version = delegate.current();
+        RunningTotals published = adaptive && writes.addAndGet(inserted) >= DECISION_PERIOD ? decide(version, totals) : totals;
+        AggregatedVersion replaced = previous;
+        while (!current.compareAndSet(replaced, new AggregatedVersion(version, published))) {
+            // A reader decided whether to keep totals meanwhile, which stands
+            replaced = current.get();
+            published = replaced.totals == null ? null : RunningTotals.EMPTY.updated(version, 0);
+        }
+    }
+
+    /**
+     * Called from the reader completing a decision period, so that stocks rarely traded but often read get totals as well.
+     * Gives up if a writer publishes a new version meanwhile.
+     */
+    private void decideOnRead() {
+        final AggregatedVersion version = current.get();
+        final RunningTotals totals = decide(version.version, version.totals);
+        if (totals != version.totals) {
+            current.compareAndSet(version, new AggregatedVersion(version.version, totals));
+        }
+    }
+
+    private RunningTotals decide(TimelineVersion version, RunningTotals totals) {
+        final long periodReads = reads.getAndSet(0);
+        final long periodWrites = writes.getAndSet(0);
+
+        if (totals == null && periodReads * READS_TO_INDEX >= periodWrites) {
+            return RunningTotals.EMPTY.updated(version, 0);
+        }
+        if (totals != null && periodReads * READS_TO_DROP < periodWrites) {
+            return null;
+        }
+        return totals;
+    }
+
+    private static RunningTotals appended(RunningTotals totals, Trade trade, Instant timestamp) {
+        final long priceInCents;
+        try {
+            priceInCents = trade.getPrice().unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            return null;
+        }
+        return totals.appended(timestamp.getEpochSecond(), timestamp.getNano(), trade.getQuantity(), priceInCents);
+    }
+
+    /**
+     * Version of the underlying chain with its running totals, if any.
+     */
+    private final class AggregatedVersion implements TimelineVersion {
+        private final TimelineVersion version;
+        private final RunningTotals totals;
+
+        private AggregatedVersion(TimelineVersion version, RunningTotals totals) {
+            this.version = version;
+            this.totals = totals;
+        }
+
+        @Override
+        public int size() {
+            return version.size();
+        }
+
+        @Override
+        public Trade get(int index) {
+            return version.get(index);
+        }
+
+        @Override
+        public long sequenceAt(int index) {
+            return version.sequenceAt(index);
+        }
+
+        @Override
+        public long minSequence() {
+            return version.minSequence();
+        }
+
+        @Override
+        public long maxSequence() {
+            return version.maxSequence();
+        }
+
+        @Override
+        public int firstTradeAfter(@NonNull Instant instant) {
+            return version.firstTradeAfter(instant);
+        }
+
+        /**
+         * Leaves the totals out, as pinned versions are only read trade by trade.
+         */
+        @Override
+        public TimelineVersion pinned() {
+            return version.pinned();
+        }
+
+        /**
+         * Subtracts running totals when every trade of the range is visible, otherwise sums the visible trades.
+         */
+        @Override
+        public TradeAggregate aggregate(int from, long cut) {
+            // Exactly one reader completes each period
+            if (adaptive && reads.incrementAndGet() == DECISION_PERIOD) {
+                decideOnRead();
+            }
+            return totals != null && version.maxSequence() <= cut ? totals.aggregate(from) : version.aggregate(from, cut);
+        }
+    }
+}
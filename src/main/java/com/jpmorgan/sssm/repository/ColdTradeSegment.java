@@ -0,0 +1,251 @@
+package com.jpmorgan.sssm.repository;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import com.jpmorgan.sssm.model.TradeIndicator;
+import lombok.NonNull;
+
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static com.jpmorgan.sssm.math.FixedPointMath.CURRENCY_SCALE;
+
+/**
+ * Immutable, compressed block of timestamp ordered trades of a single stock.
+ * <p>
+ * Trades are encoded column by column into a single byte array:
+ * <ul>
+ * <li>timestamps as epoch nanoseconds, with the difference between consecutive deltas (delta-of-delta) stored as a zig-zag
+ * varint, thus trades arriving at a steady pace take a single byte;</li>
+ * <li>quantities as varints;</li>
+ * <li>prices in cents and sequence numbers as zig-zag varint deltas from the previous trade;</li>
+ * </ul>
+ * while indicators are packed one bit per trade. A trade usually takes less than 8 bytes against more than 100 as objects.
+ * <p>
+ * Segments are decoded on demand. Decoded trades are weakly cached, thus left to the garbage collector as soon as nobody
+ * holds them. Reads over a range of trades hold them through {@link TimelineVersion#pinned()}, so that they decode each
+ * segment once even if the cache is cleared meanwhile.
+ *
+ * @author Anthony Accioly
+ */
+final class ColdTradeSegment {
+
+    private static final TradeIndicator[] INDICATORS = TradeIndicator.values();
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final Stock stock;
+    private final int size;
+    private final byte[] encoded;
+    private final long[] indicators;
+    private final Instant lastTimestamp;
+    private volatile WeakReference<Decoded> decoded = new WeakReference<>(null);
+
+    private ColdTradeSegment(Stock stock, int size, byte[] encoded, long[] indicators, Instant lastTimestamp) {
+        this.stock = stock;
+        this.size = size;
+        this.encoded = encoded;
+        this.indicators = indicators;
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    /**
+     * Encodes a block of trades.
+     *
+     * @param stock the stock of every trade
+     * @param trades trades in timestamp order
+     * @param sequences sequence numbers of the trades
+     * @param size number of trades to encode
+     *
+     * @return the sealed segment, or {@code null} if the trades can't be encoded, i.e., their timestamps don't fit in a
+     * {@code long} of nanoseconds or their prices don't fit in a {@code long} of cents
+     */
+    static ColdTradeSegment seal(@NonNull Stock stock, @NonNull Trade[] trades, @NonNull long[] sequences, int size) {
+        final Encoder encoder = new Encoder(size);
+        final long[] indicators = new long[(size + 63) >>> 6];
+        try {
+            long previousTimestamp = 0;
+            long previousDelta = 0;
+            long previousPrice = 0;
+            long previousSequence = 0;
+            for (int index = 0; index < size; index++) {
+                final Trade trade = trades[index];
+                final Instant timestamp = trade.getTimestamp();
+                final long epochNanos = Math.addExact(Math.multiplyExact(timestamp.getEpochSecond(), NANOS_PER_SECOND), timestamp.getNano());
+                final long delta = Math.subtractExact(epochNanos, previousTimestamp);
+                encoder.writeSigned(index == 0 ? epochNanos : Math.subtractExact(delta, previousDelta));
+                previousDelta = index == 0 ? 0 : delta;
+                previousTimestamp = epochNanos;
+
+                encoder.writeUnsigned(trade.getQuantity());
+
+                final long price = trade.getPrice().unscaledValue().longValueExact();
+                encoder.writeSigned(Math.subtractExact(price, previousPrice));
+                previousPrice = price;
+
+                encoder.writeSigned(Math.subtractExact(sequences[index], previousSequence));
+                previousSequence = sequences[index];
+
+                indicators[index >>> 6] |= (long) trade.getIndicator().ordinal() << index;
+            }
+        } catch (ArithmeticException e) {
+            return null;
+        }
+        return new ColdTradeSegment(stock, size, encoder.toByteArray(), indicators, trades[size - 1].getTimestamp());
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the timestamp of the last trade, available without decoding the segment
+     */
+    Instant lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * @return number of bytes taken by the encoded trades
+     */
+    int encodedSize() {
+        return encoded.length + indicators.length * Long.BYTES;
+    }
+
+    Trade get(int index) {
+        return decode().get(index);
+    }
+
+    long sequenceAt(int index) {
+        return decode().sequenceAt(index);
+    }
+
+    /**
+     * @return the decoded trades, from the cache if they are still there
+     */
+    Decoded decode() {
+        Decoded trades = decoded.get();
+        if (trades == null) {
+            // Racing readers may decode the segment twice, producing equal trades
+            trades = new Decoded(stock, size, encoded, indicators);
+            decoded = new WeakReference<>(trades);
+        }
+        return trades;
+    }
+
+    @VisibleForTesting
+    boolean isCached() {
+        return decoded.get() != null;
+    }
+
+    /**
+     * Clears the cache, as the garbage collector would.
+     */
+    @VisibleForTesting
+    void evict() {
+        decoded = new WeakReference<>(null);
+    }
+
+    /**
+     * Trades and sequence numbers of a segment, as objects.
+     */
+    static final class Decoded {
+        private final Trade[] trades;
+        private final long[] sequences;
+
+        private Decoded(Stock stock, int size, byte[] encoded, long[] indicators) {
+            trades = new Trade[size];
+            sequences = new long[size];
+
+            final Decoder decoder = new Decoder(encoded);
+            long timestamp = 0;
+            long delta = 0;
+            long price = 0;
+            long sequence = 0;
+            for (int index = 0; index < size; index++) {
+                if (index == 0) {
+                    timestamp = decoder.readSigned();
+                } else {
+                    delta += decoder.readSigned();
+                    timestamp += delta;
+                }
+                final int quantity = (int) decoder.readUnsigned();
+                price += decoder.readSigned();
+                sequence += decoder.readSigned();
+                final TradeIndicator indicator = INDICATORS[(int) (indicators[index >>> 6] >>> index) & 1];
+
+                trades[index] = Trade.createOrder(stock, Instant.ofEpochSecond(Math.floorDiv(timestamp, NANOS_PER_SECOND),
+                        Math.floorMod(timestamp, NANOS_PER_SECOND)), quantity, indicator, BigDecimal.valueOf(price, CURRENCY_SCALE));
+                sequences[index] = sequence;
+            }
+        }
+
+        Trade get(int index) {
+            return trades[index];
+        }
+
+        long sequenceAt(int index) {
+            return sequences[index];
+        }
+    }
+
+    /**
+     * Growable buffer of LEB128 varints.
+     */
+    private static final class Encoder {
+        private byte[] bytes;
+        private int length;
+
+        private Encoder(int trades) {
+            bytes = new byte[Math.max(16, trades * 8)];
+        }
+
+        private void writeSigned(long value) {
+            // Zig-zag encoding, so that small negative values take few bytes as well
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        private void writeUnsigned(long value) {
+            if (length + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+            }
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+
+    private static final class Decoder {
+        private final byte[] bytes;
+        private int position;
+
+        private Decoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private long readSigned() {
+            final long value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readUnsigned() {
+            long value = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = bytes[position++];
+                value |= (long) (current & 0x7F) << shift;
+                shift += 7;
+            } while (current < 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,568 @@
+package com.jpmorgan.sssm.repository;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.jpmorgan.sssm.model.MutableTrade;
+import com.jpmorgan.sssm.model.Trade;
+import lombok.NonNull;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decorator splitting the appends of heavily traded (hot) stocks across per-thread buffers.
+ * <p>
+ * Trades go straight to the underlying chain until writers are found waiting for each other: if at least
+ * {@link #CONTENDED_TO_SPLIT} of the last {@link #CONTENTION_PERIOD} trades had to wait for the lock of the chain, the stock
+ * becomes hot. From then on each writer thread appends to one of a few stripes, each with its own lock. A stripe is drained
+ * into the underlying chain, as a single batch merge, once it holds {@link #STRIPE_SIZE} trades, so that writers only meet
+ * once every few hundred trades.
+ * <p>
+ * A hot stock cools down once a single stripe drained {@link #DRAINS_TO_COOL} times in a row, i.e., there is a single
+ * writer left: stripes are closed, their trades are merged into the underlying chain and trades go straight to it again.
+ * Trades left in the stripes by writers that stopped are drained by the other writers: every {@link #IDLE_FLUSH_NANOS} a
+ * writer drains the stripes nothing was appended to for as long.
+ * <p>
+ * Readers merge the trades still buffered in the stripes into the version of the underlying chain, in timestamp order.
+ * Every trade ever buffered by a stripe has an offset; versions of the underlying chain record how many trades of each
+ * stripe they hold. Stripes are read before the underlying chain and drained trades are published to the underlying chain
+ * before leaving their stripe, thus readers skip buffered trades with offsets the chain already holds and never see a trade
+ * twice nor miss one. Reading never takes a lock nor drains a stripe.
+ *
+ * @author Anthony Accioly
+ */
+final class HotStockTradeChain implements VersionedTradeChain {
+
+    static final int CONTENTION_PERIOD = 1024;
+    static final int CONTENDED_TO_SPLIT = 64;
+    static final int STRIPE_SIZE = 256;
+    static final int DRAINS_TO_COOL = 16;
+    static final long IDLE_FLUSH_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final int STRIPES = Math.max(2, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private final VersionedTradeChain delegate;
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Whether writers append to the stripes
+     */
+    private volatile boolean hot;
+    /**
+     * Stripes of the current hot period, kept while cooling down until their trades are in the underlying chain
+     */
+    private volatile Stripe[] stripes;
+    /**
+     * Published version of the underlying chain while there are stripes
+     */
+    private volatile Drained drained;
+    private volatile Merged merged;
+    private volatile boolean coolingDown;
+    private volatile long lastIdleCheck;
+    // Guarded by the lock
+    private int inserts;
+    private int contended;
+    private int lastDrainedStripe = -1;
+    private int drainsOfLastStripe;
+
+    HotStockTradeChain(@NonNull VersionedTradeChain delegate) {
+        this.delegate = delegate;
+    }
+
+    @VisibleForTesting
+    boolean isHot() {
+        return hot;
+    }
+
+    /**
+     * Splits appends across stripes from now on.
+     */
+    @VisibleForTesting
+    void split() {
+        lock.lock();
+        try {
+            if (stripes == null) {
+                heat();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void insert(@NonNull Trade trade, long sequence) {
+        if (hot) {
+            final Stripe[] hotStripes = stripes;
+            if (hotStripes != null && hotStripes[stripeOfCurrentThread()].append(trade, sequence)) {
+                afterAppend(hotStripes);
+                return;
+            }
+        }
+        insertDirectly(trade, null, sequence);
+    }
+
+    /**
+     * Records the values straight into the underlying chain while the stock is cold; a {@link Trade} is only materialized to
+     * be buffered in a stripe.
+     */
+    @Override
+    public void insert(@NonNull MutableTrade trade, long sequence) {
+        if (hot) {
+            final Stripe[] hotStripes = stripes;
+            if (hotStripes != null && hotStripes[stripeOfCurrentThread()].append(trade.toTrade(), sequence)) {
+                afterAppend(hotStripes);
+                return;
+            }
+        }
+        insertDirectly(null, trade, sequence);
+    }
+
+    /**
+     * Batches are already recorded with a single lock acquisition, thus they always go straight to the underlying chain.
+     */
+    @Override
+    public void insertAll(@NonNull List<Trade> trades, @NonNull long[] sequences) {
+        lock.lock();
+        try {
+            delegate.insertAll(trades, sequences);
+            if (stripes != null) {
+                drained = drained.following(delegate.current());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Batches of records go straight to the underlying chain as well, without materializing {@link Trade}s.
+     */
+    @Override
+    public void insertRecords(@NonNull List<MutableTrade> trades, long firstSequence) {
+        lock.lock();
+        try {
+            delegate.insertRecords(trades, firstSequence);
+            if (stripes != null) {
+                drained = drained.following(delegate.current());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public TimelineVersion current() {
+        while (true) {
+            final Stripe[] hotStripes = stripes;
+            if (hotStripes == null) {
+                return delegate.current();
+            }
+
+            // Stripes first, see the class documentation
+            final Buffered[] buffered = new Buffered[STRIPES];
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                buffered[stripe] = hotStripes[stripe].buffered;
+            }
+            final Drained base = drained;
+            if (base.stripes != hotStripes) {
+                // Stripes were replaced meanwhile
+                continue;
+            }
+
+            final Merged cached = merged;
+            if (cached != null && cached.base == base && Arrays.equals(cached.buffered, buffered)) {
+                return cached.version;
+            }
+            final Merged fresh = new Merged(base, buffered);
+            merged = fresh;
+            return fresh.version;
+        }
+    }
+
+    private static int stripeOfCurrentThread() {
+        return stripeOf(Thread.currentThread().getId());
+    }
+
+    @VisibleForTesting
+    static int stripeOf(long threadId) {
+        return (int) threadId & (STRIPES - 1);
+    }
+
+    /**
+     * Records a trade, or the values of a record, straight into the underlying chain.
+     */
+    private void insertDirectly(Trade trade, MutableTrade record, long sequence) {
+        final boolean waited = !lock.tryLock();
+        if (waited) {
+            lock.lock();
+        }
+        try {
+            if (trade != null) {
+                delegate.insert(trade, sequence);
+            } else {
+                delegate.insert(record, sequence);
+            }
+            if (stripes != null) {
+                drained = drained.following(delegate.current());
+            } else {
+                countContention(waited);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void afterAppend(Stripe[] hotStripes) {
+        if (coolingDown) {
+            coolDown();
+            return;
+        }
+        final long now = System.nanoTime();
+        if (now - lastIdleCheck >= IDLE_FLUSH_NANOS) {
+            // Racy, at worst a few writers check at once
+            lastIdleCheck = now;
+            for (Stripe stripe : hotStripes) {
+                stripe.drainIfIdle(now);
+            }
+        }
+    }
+
+    /**
+     * Called with the lock held, while there are no stripes.
+     */
+    private void countContention(boolean waited) {
+        inserts++;
+        if (waited) {
+            contended++;
+        }
+        if (inserts == CONTENTION_PERIOD) {
+            if (contended >= CONTENDED_TO_SPLIT) {
+                heat();
+            }
+            inserts = 0;
+            contended = 0;
+        }
+    }
+
+    /**
+     * Called with the lock held, after a stripe was drained because it was full.
+     */
+    private void countDrain(int stripe) {
+        if (stripe != lastDrainedStripe) {
+            lastDrainedStripe = stripe;
+            drainsOfLastStripe = 1;
+        } else if (++drainsOfLastStripe >= DRAINS_TO_COOL && hot) {
+            coolingDown = true;
+        }
+    }
+
+    /**
+     * Creates the stripes, which are only allocated for hot stocks. Called with the lock held, while there are no stripes.
+     */
+    private void heat() {
+        final Stripe[] newStripes = new Stripe[STRIPES];
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            newStripes[stripe] = new Stripe(stripe);
+        }
+        drained = new Drained(newStripes, delegate.current(), new long[STRIPES]);
+        lastIdleCheck = System.nanoTime();
+        stripes = newStripes;
+        coolingDown = false;
+        lastDrainedStripe = -1;
+        drainsOfLastStripe = 0;
+        // Publishes the stripes to writers
+        hot = true;
+    }
+
+    /**
+     * Sends writers straight to the underlying chain again, then merges the trades left in the stripes into it.
+     */
+    private void coolDown() {
+        final Stripe[] hotStripes;
+        lock.lock();
+        try {
+            if (!coolingDown) {
+                return;
+            }
+            coolingDown = false;
+            hot = false;
+            hotStripes = stripes;
+        } finally {
+            lock.unlock();
+        }
+
+        // Outside of the lock, as stripes hold their own lock while draining into the underlying chain
+        final Buffered[] remaining = new Buffered[STRIPES];
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            remaining[stripe] = hotStripes[stripe].close();
+        }
+
+        lock.lock();
+        try {
+            final List<Trade> trades = new ArrayList<>();
+            final long[] sequences = new long[STRIPES * STRIPE_SIZE];
+            final long[] offsets = drained.offsets.clone();
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                final Buffered stripeTrades = remaining[stripe];
+                for (int index = 0; index < stripeTrades.size; index++) {
+                    sequences[trades.size()] = stripeTrades.sequences[index];
+                    trades.add(stripeTrades.trades[index]);
+                }
+                offsets[stripe] = stripeTrades.offset + stripeTrades.size;
+            }
+            delegate.insertAll(trades, Arrays.copyOf(sequences, trades.size()));
+
+            drained = new Drained(hotStripes, delegate.current(), offsets);
+            stripes = null;
+            merged = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Version of the underlying chain, plus the number of trades drained into it from each stripe.
+     */
+    private static final class Drained {
+        private final Stripe[] stripes;
+        private final TimelineVersion version;
+        private final long[] offsets;
+
+        private Drained(Stripe[] stripes, TimelineVersion version, long[] offsets) {
+            this.stripes = stripes;
+            this.version = version;
+            this.offsets = offsets;
+        }
+
+        /**
+         * @return a later version of the underlying chain with the same trades drained from the stripes
+         */
+        private Drained following(TimelineVersion newVersion) {
+            return new Drained(stripes, newVersion, offsets);
+        }
+    }
+
+    /**
+     * Immutable view of the trades buffered by a stripe, in arrival order.
+     */
+    private static final class Buffered {
+        private final Trade[] trades;
+        private final long[] sequences;
+        private final int size;
+        /**
+         * Offset of the first buffered trade
+         */
+        private final long offset;
+
+        private Buffered(Trade[] trades, long[] sequences, int size, long offset) {
+            this.trades = trades;
+            this.sequences = sequences;
+            this.size = size;
+            this.offset = offset;
+        }
+
+        /**
+         * @return an empty buffer with its own arrays
+         */
+        private static Buffered empty(long offset) {
+            return new Buffered(new Trade[STRIPE_SIZE], new long[STRIPE_SIZE], 0, offset);
+        }
+    }
+
+    private final class Stripe {
+        private final int index;
+        private volatile Buffered buffered = Buffered.empty(0);
+        private volatile long lastAppendAt = System.nanoTime();
+        // Guarded by the monitor of the stripe
+        private boolean closed;
+
+        private Stripe(int index) {
+            this.index = index;
+        }
+
+        /**
+         * @return {@code false} if the stripe was closed, in which case the trade has to go straight to the underlying chain
+         */
+        private synchronized boolean append(Trade trade, long sequence) {
+            if (closed) {
+                return false;
+            }
+            final Buffered current = buffered;
+            // Slots after the published size are never read, thus arrays are shared until drained
+            current.trades[current.size] = trade;
+            current.sequences[current.size] = sequence;
+            final Buffered appended = new Buffered(current.trades, current.sequences, current.size + 1, current.offset);
+            lastAppendAt = System.nanoTime();
+
+            if (appended.size < STRIPE_SIZE) {
+                buffered = appended;
+            } else {
+                drain(appended, true);
+            }
+            return true;
+        }
+
+        /**
+         * Drains the stripe if it holds trades and nothing was appended to it for {@link #IDLE_FLUSH_NANOS}, e.g., after its
+         * writers stopped.
+         */
+        private void drainIfIdle(long now) {
+            // Checked before taking the monitor, so that writers skip busy stripes
+            if (buffered.size == 0 || now - lastAppendAt < IDLE_FLUSH_NANOS) {
+                return;
+            }
+            synchronized (this) {
+                if (!closed && buffered.size > 0 && now - lastAppendAt >= IDLE_FLUSH_NANOS) {
+                    drain(buffered, false);
+                }
+            }
+        }
+
+        /**
+         * Stops appends to the stripe.
+         *
+         * @return the trades still buffered, which are kept visible to readers until the stripes are dropped
+         */
+        private synchronized Buffered close() {
+            closed = true;
+            return buffered;
+        }
+
+        private void drain(Buffered full, boolean counted) {
+            lock.lock();
+            try {
+                delegate.insertAll(Arrays.asList(full.trades).subList(0, full.size), Arrays.copyOf(full.sequences, full.size));
+                final long[] offsets = drained.offsets.clone();
+                offsets[index] = full.offset + full.size;
+                drained = new Drained(drained.stripes, delegate.current(), offsets);
+                if (counted) {
+                    countDrain(index);
+                }
+            } finally {
+                lock.unlock();
+            }
+            buffered = Buffered.empty(full.offset + full.size);
+        }
+    }
+
+    /**
+     * Version of the underlying chain merged with the trades buffered in the stripes, cached until either changes.
+     */
+    private static final class Merged {
+        private final Drained base;
+        private final Buffered[] buffered;
+        private final TimelineVersion version;
+
+        private Merged(Drained base, Buffered[] buffered) {
+            this.base = base;
+            this.buffered = buffered;
+
+            final List<Trade> pendingTrades = new ArrayList<>();
+            final List<Long> pendingSequences = new ArrayList<>();
+            for (int stripe = 0; stripe < buffered.length; stripe++) {
+                final Buffered stripeTrades = buffered[stripe];
+                // Trades already drained into the version of the underlying chain are left out
+                final long firstPending = Math.max(0, base.offsets[stripe] - stripeTrades.offset);
+                for (int index = (int) Math.min(firstPending, stripeTrades.size); index < stripeTrades.size; index++) {
+                    pendingTrades.add(stripeTrades.trades[index]);
+                    pendingSequences.add(stripeTrades.sequences[index]);
+                }
+            }
+            this.version = pendingTrades.isEmpty() ? base.version : new MergedVersion(base.version, pendingTrades, pendingSequences);
+        }
+    }
+
+    /**
+     * Timeline of the underlying chain with a few pending trades inserted at their positions.
+     */
+    private static final class MergedVersion implements TimelineVersion {
+        private final TimelineVersion base;
+        private final Trade[] pending;
+        private final long[] pendingSequences;
+        /**
+         * Position of each pending trade in the merged timeline, strictly increasing
+         */
+        private final int[] positions;
+        private final long minSequence;
+        private final long maxSequence;
+
+        private MergedVersion(TimelineVersion base, List<Trade> trades, List<Long> sequences) {
+            this.base = base;
+            final Integer[] order = TradeTimeline.timestampOrder(trades);
+
+            pending = new Trade[order.length];
+            pendingSequences = new long[order.length];
+            positions = new int[order.length];
+            long min = base.minSequence();
+            long max = base.maxSequence();
+            for (int i = 0; i < order.length; i++) {
+                pending[i] = trades.get(order[i]);
+                pendingSequences[i] = sequences.get(order[i]);
+                // After the trades of the underlying chain with the same timestamp
+                positions[i] = base.firstTradeAfter(pending[i].getTimestamp()) + i;
+                min = Math.min(min, pendingSequences[i]);
+                max = Math.max(max, pendingSequences[i]);
+            }
+            minSequence = min;
+            maxSequence = max;
+        }
+
+        private MergedVersion(TimelineVersion base, MergedVersion merged) {
+            this.base = base;
+            this.pending = merged.pending;
+            this.pendingSequences = merged.pendingSequences;
+            this.positions = merged.positions;
+            this.minSequence = merged.minSequence;
+            this.maxSequence = merged.maxSequence;
+        }
+
+        @Override
+        public int size() {
+            return base.size() + pending.length;
+        }
+
+        @Override
+        public Trade get(int index) {
+            final int found = Arrays.binarySearch(positions, index);
+            return found >= 0 ? pending[found] : base.get(index + found + 1);
+        }
+
+        @Override
+        public long sequenceAt(int index) {
+            final int found = Arrays.binarySearch(positions, index);
+            return found >= 0 ? pendingSequences[found] : base.sequenceAt(index + found + 1);
+        }
+
+        @Override
+        public long minSequence() {
+            return minSequence;
+        }
+
+        @Override
+        public long maxSequence() {
+            return maxSequence;
+        }
+
+        @Override
+        public int firstTradeAfter(@NonNull Instant instant) {
+            int low = 0;
+            int high = pending.length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (pending[middle].getTimestamp().isAfter(instant)) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return base.firstTradeAfter(instant) + low;
+        }
+
+        @Override
+        public TimelineVersion pinned() {
+            final TimelineVersion pinnedBase = base.pinned();
+            return pinnedBase == base ? this : new MergedVersion(pinnedBase, this);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.jpmorgan.sssm.repository;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Copy-on-write chain of fixed size chunks holding the trades of a single stock.
+ * <p>
+ * Trades are kept in timestamp order. In order trades are appended to slots after the end of the published version, thus
+ * nothing is copied. A late trade copies the chunks from its position onward (usually only the last one) and shifts the
+ * trades after it, leaving the chunks of published versions untouched. Batches holding late trades are merged in a single
+ * pass, copying those chunks once.
+ * <p>
+ * Full chunks whose trades are older than {@link #COLD_AFTER} relative to the latest trade are sealed into
+ * {@link ColdTradeSegment}s, which are decoded only when read. Trades within the VWAP time period stay as objects. A late
+ * trade landing in a sealed chunk turns the chunks from its position onward back into objects until they are sealed again.
+ *
+ * @author Anthony Accioly
+ */
+final class InMemoryTradeChain implements VersionedTradeChain {
+
+    static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Age, relative to the latest trade, after which full chunks are sealed.
+     */
+    static final Duration COLD_AFTER = Duration.ofMinutes(30);
+
+    private final Stock stock;
+    private volatile Version current = new Version(new Trade[0][], new long[0][], new ColdTradeSegment[0], 0, Long.MAX_VALUE,
+            Long.MIN_VALUE);
+
+    InMemoryTradeChain(@NonNull Stock stock) {
+        this.stock = stock;
+    }
+
+    @Override
+    public TimelineVersion current() {
+        return current;
+    }
+
+    @Override
+    public synchronized void insert(@NonNull Trade trade, long sequence) {
+        current = inserted(current, trade, sequence);
+    }
+
+    @Override
+    public synchronized void insertAll(@NonNull List<Trade> trades, @NonNull long[] sequences) {
+        if (trades.isEmpty()) {
+            return;
+        }
+        final Integer[] order = TradeTimeline.timestampOrder(trades);
+
+        Version version = current;
+        if (version.firstTradeAfter(trades.get(order[0]).getTimestamp()) == version.size) {
+            // Every trade goes after the end of the timeline, thus they are appended
+            for (int index : order) {
+                version = inserted(version, trades.get(index), sequences[index]);
+            }
+        } else {
+            version = merged(version, trades, sequences, order);
+        }
+        current = version;
+    }
+
+    /**
+     * @return number of bytes taken by the sealed chunks of the latest version
+     */
+    @VisibleForTesting
+    int coldSize() {
+        return Arrays.stream(current.cold).filter(segment -> segment != null).mapToInt(ColdTradeSegment::encodedSize).sum();
+    }
+
+    /**
+     * @return the sealed segment of a chunk of the latest version, or {@code null} if the chunk isn't sealed
+     */
+    @VisibleForTesting
+    ColdTradeSegment coldSegment(int chunk) {
+        return current.cold[chunk];
+    }
+
+    /**
+     * Builds the version following a trade insertion, without publishing it.
+     */
+    private Version inserted(Version version, Trade trade, long sequence) {
+        final int size = version.size;
+        final int position = version.firstTradeAfter(trade.getTimestamp());
+
+        Trade[][] trades = version.trades;
+        long[][] sequences = version.sequences;
+        ColdTradeSegment[] cold = version.cold;
+        final int lastChunk = size / CHUNK_SIZE;
+        if (lastChunk == trades.length) {
+            trades = Arrays.copyOf(trades, Math.max(4, 2 * trades.length));
+            sequences = Arrays.copyOf(sequences, trades.length);
+            cold = Arrays.copyOf(cold, trades.length);
+        } else if (position < size) {
+            trades = trades.clone();
+            sequences = sequences.clone();
+            cold = cold.clone();
+        }
+
+        if (position == size) {
+            if (size % CHUNK_SIZE == 0) {
+                trades[lastChunk] = new Trade[CHUNK_SIZE];
+                sequences[lastChunk] = new long[CHUNK_SIZE];
+            }
+            trades[lastChunk][size % CHUNK_SIZE] = trade;
+            sequences[lastChunk][size % CHUNK_SIZE] = sequence;
+        } else {
+            final Version pinned = version.pinned();
+            for (int chunk = position / CHUNK_SIZE; chunk <= lastChunk; chunk++) {
+                trades[chunk] = new Trade[CHUNK_SIZE];
+                sequences[chunk] = new long[CHUNK_SIZE];
+                cold[chunk] = null;
+                for (int slot = 0, index = chunk * CHUNK_SIZE; slot < CHUNK_SIZE && index <= size; slot++, index++) {
+                    // Trades after the insertion point move one position forward
+                    final int source = index < position ? index : index - 1;
+                    trades[chunk][slot] = index == position ? trade : pinned.get(source);
+                    sequences[chunk][slot] = index == position ? sequence : pinned.sequenceAt(source);
+                }
+            }
+        }
+
+        final Version next = new Version(trades, sequences, cold, size + 1, Math.min(version.minSequence, sequence),
+                Math.max(version.maxSequence, sequence));
+        // Starting a new chunk is the only time a chunk may have become both full and cold
+        return position == size && size % CHUNK_SIZE == 0 && size > 0 ? sealed(next, trade.getTimestamp().minus(COLD_AFTER)) : next;
+    }
+
+    /**
+     * Merges a batch of trades into a version in a single pass, copying the chunks from the position of the earliest trade
+     * onward once. Trades of the batch go after the trades of the version with the same timestamp.
+     *
+     * @param order indexes of the trades of the batch in timestamp order
+     *
+     * @return the merged version, not yet published
+     */
+    private Version merged(Version version, List<Trade> batch, long[] batchSequences, Integer[] order) {
+        final int size = version.size;
+        final int total = size + order.length;
+        final int startChunk = version.firstTradeAfter(batch.get(order[0]).getTimestamp()) / CHUNK_SIZE;
+        final int chunks = Math.max(version.trades.length, (total + CHUNK_SIZE - 1) / CHUNK_SIZE);
+
+        // Chunks before the start are shared, the rest are rebuilt
+        final Trade[][] trades = Arrays.copyOf(version.trades, chunks);
+        final long[][] sequences = Arrays.copyOf(version.sequences, chunks);
+        final ColdTradeSegment[] cold = Arrays.copyOf(version.cold, chunks);
+        long minSequence = version.minSequence;
+        long maxSequence = version.maxSequence;
+
+        final Version pinned = version.pinned();
+        int index = startChunk * CHUNK_SIZE;
+        int next = 0;
+        for (int target = startChunk * CHUNK_SIZE; target < total; target++) {
+            final int chunk = target / CHUNK_SIZE;
+            if (target % CHUNK_SIZE == 0) {
+                trades[chunk] = new Trade[CHUNK_SIZE];
+                sequences[chunk] = new long[CHUNK_SIZE];
+                cold[chunk] = null;
+            }
+            final Trade pending = next < order.length ? batch.get(order[next]) : null;
+            if (pending != null && (index == size || pending.getTimestamp().isBefore(pinned.get(index).getTimestamp()))) {
+                final long sequence = batchSequences[order[next++]];
+                trades[chunk][target % CHUNK_SIZE] = pending;
+                sequences[chunk][target % CHUNK_SIZE] = sequence;
+                minSequence = Math.min(minSequence, sequence);
+                maxSequence = Math.max(maxSequence, sequence);
+            } else {
+                trades[chunk][target % CHUNK_SIZE] = pinned.get(index);
+                sequences[chunk][target % CHUNK_SIZE] = pinned.sequenceAt(index++);
+            }
+        }
+
+        final Version merged = new Version(trades, sequences, cold, total, minSequence, maxSequence);
+        return sealed(merged, merged.get(total - 1).getTimestamp().minus(COLD_AFTER));
+    }
+
+    /**
+     * Seals the full chunks of a version holding trades older than a threshold.
+     *
+     * @return a version sharing every other chunk, or the version itself if there was nothing to seal
+     */
+    private Version sealed(Version version, Instant threshold) {
+        Trade[][] trades = version.trades;
+        long[][] sequences = version.sequences;
+        ColdTradeSegment[] cold = version.cold;
+        for (int chunk = 0; chunk < version.size / CHUNK_SIZE; chunk++) {
+            if (cold[chunk] == null && trades[chunk][CHUNK_SIZE - 1].getTimestamp().isBefore(threshold)) {
+                final ColdTradeSegment segment = ColdTradeSegment.seal(stock, trades[chunk], sequences[chunk], CHUNK_SIZE);
+                if (segment != null) {
+                    if (cold == version.cold) {
+                        // The arrays may be shared with published versions
+                        trades = trades.clone();
+                        sequences = sequences.clone();
+                        cold = cold.clone();
+                    }
+                    trades[chunk] = null;
+                    sequences[chunk] = null;
+                    cold[chunk] = segment;
+                }
+            }
+        }
+        return cold == version.cold ? version
+                : new Version(trades, sequences, cold, version.size, version.minSequence, version.maxSequence);
+    }
+
+    /**
+     * Published, immutable version of the chain.
+     * <p>
+     * Each chunk either holds trade objects and sequence numbers, or a sealed segment. Pinned copies of a version also hold
+     * the segments they decoded.
+     */
+    private static final class Version implements TimelineVersion {
+        private final Trade[][] trades;
+        private final long[][] sequences;
+        private final ColdTradeSegment[] cold;
+        private final int size;
+        private final long minSequence;
+        private final long maxSequence;
+        /**
+         * Segments decoded by a pinned copy, {@code null} for published versions. Racing readers may decode a segment twice
+         */
+        private final ColdTradeSegment.Decoded[] decoded;
+
+        private Version(Trade[][] trades, long[][] sequences, ColdTradeSegment[] cold, int size, long minSequence, long maxSequence) {
+            this(trades, sequences, cold, size, minSequence, maxSequence, null);
+        }
+
+        private Version(Trade[][] trades, long[][] sequences, ColdTradeSegment[] cold, int size, long minSequence,
+                        long maxSequence, ColdTradeSegment.Decoded[] decoded) {
+            this.trades = trades;
+            this.sequences = sequences;
+            this.cold = cold;
+            this.size = size;
+            this.minSequence = minSequence;
+            this.maxSequence = maxSequence;
+            this.decoded = decoded;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Trade get(int index) {
+            final ColdTradeSegment segment = cold[index / CHUNK_SIZE];
+            return segment == null ? trades[index / CHUNK_SIZE][index % CHUNK_SIZE]
+                    : decoded(index / CHUNK_SIZE).get(index % CHUNK_SIZE);
+        }
+
+        @Override
+        public long sequenceAt(int index) {
+            final ColdTradeSegment segment = cold[index / CHUNK_SIZE];
+            return segment == null ? sequences[index / CHUNK_SIZE][index % CHUNK_SIZE]
+                    : decoded(index / CHUNK_SIZE).sequenceAt(index % CHUNK_SIZE);
+        }
+
+        @Override
+        public long minSequence() {
+            return minSequence;
+        }
+
+        @Override
+        public long maxSequence() {
+            return maxSequence;
+        }
+
+        /**
+         * Searches the last timestamp of each chunk first, so that only the chunk holding the result may have to be decoded.
+         */
+        @Override
+        public int firstTradeAfter(@NonNull Instant instant) {
+            final int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            int lowChunk = 0;
+            int highChunk = chunks;
+            while (lowChunk < highChunk) {
+                final int middle = (lowChunk + highChunk) >>> 1;
+                if (lastTimestampOf(middle).isAfter(instant)) {
+                    highChunk = middle;
+                } else {
+                    lowChunk = middle + 1;
+                }
+            }
+            if (lowChunk == chunks) {
+                return size;
+            }
+
+            final ColdTradeSegment.Decoded segment = cold[lowChunk] == null ? null : decoded(lowChunk);
+            int low = lowChunk * CHUNK_SIZE;
+            int high = Math.min(size, low + CHUNK_SIZE);
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                final Trade trade = segment == null ? trades[lowChunk][middle % CHUNK_SIZE] : segment.get(middle % CHUNK_SIZE);
+                if (trade.getTimestamp().isAfter(instant)) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        public Version pinned() {
+            return decoded != null ? this : new Version(trades, sequences, cold, size, minSequence, maxSequence,
+                    new ColdTradeSegment.Decoded[cold.length]);
+        }
+
+        /**
+         * @return the trades of a sealed chunk, held from then on by pinned copies
+         */
+        private ColdTradeSegment.Decoded decoded(int chunk) {
+            if (decoded == null) {
+                return cold[chunk].decode();
+            }
+            ColdTradeSegment.Decoded trades = decoded[chunk];
+            if (trades == null) {
+                trades = cold[chunk].decode();
+                decoded[chunk] = trades;
+            }
+            return trades;
+        }
+
+        private Instant lastTimestampOf(int chunk) {
+            final ColdTradeSegment segment = cold[chunk];
+            return segment != null ? segment.lastTimestamp()
+                    : trades[chunk][Math.min(size - chunk * CHUNK_SIZE, CHUNK_SIZE) - 1].getTimestamp();
+        }
+    }
+}
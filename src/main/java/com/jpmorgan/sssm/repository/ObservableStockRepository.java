@@ -0,0 +1,118 @@
+package com.jpmorgan.sssm.repository;
+
+import com.jpmorgan.sssm.model.MutableTrade;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import lombok.NonNull;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Decorator that notifies listeners of every trade recorded in the underlying repository.
+ * <p>
+ * Listeners are notified synchronously, in registration order, after the trade has been recorded. This is the extension
+ * point for metrics maintained incrementally as trades arrive.
+ *
+ * @author Anthony Accioly
+ */
+public final class ObservableStockRepository implements StockRepository {
+
+    private final StockRepository delegate;
+    private final List<Consumer<Trade>> listeners = new CopyOnWriteArrayList<>();
+
+    public ObservableStockRepository(@NonNull StockRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Registers a listener to be notified of every trade recorded from now on.
+     *
+     * @param listener the listener, typically an incremental metrics engine
+     *
+     * @return this repository, for chaining
+     */
+    public ObservableStockRepository addListener(@NonNull Consumer<Trade> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    @Override
+    public void record(@NonNull Trade trade) {
+        delegate.record(trade);
+        listeners.forEach(listener -> listener.accept(trade));
+    }
+
+    /**
+     * Records a reusable trade record, materializing it as a {@link Trade} only if there are listeners to be notified.
+     *
+     * @param trade the values of the trade to be recorded.
+     */
+    @Override
+    public void record(@NonNull MutableTrade trade) {
+        if (listeners.isEmpty()) {
+            delegate.record(trade);
+        } else {
+            record(trade.toTrade());
+        }
+    }
+
+    @Override
+    public void recordAll(@NonNull Collection<Trade> trades) {
+        delegate.recordAll(trades);
+        for (Trade trade : trades) {
+            listeners.forEach(listener -> listener.accept(trade));
+        }
+    }
+
+    /**
+     * Records a batch of reusable trade records, materializing them as {@link Trade}s only if there are listeners to be
+     * notified.
+     *
+     * @param trades the values of the trades to be recorded.
+     * @param count the number of records to be recorded, from the start of the array.
+     */
+    @Override
+    public void recordAll(@NonNull MutableTrade[] trades, int count) {
+        if (listeners.isEmpty()) {
+            delegate.recordAll(trades, count);
+        } else {
+            StockRepository.super.recordAll(trades, count);
+        }
+    }
+
+    @Override
+    public StockHistory snapshot() {
+        return delegate.snapshot();
+    }
+
+    @Override
+    public Set<Stock> findAllStocks() {
+        return delegate.findAllStocks();
+    }
+
+    @Override
+    public Collection<Trade> findTradesByStock(@NonNull Stock stock) {
+        return delegate.findTradesByStock(stock);
+    }
+
+    @Override
+    public Collection<Trade> findTradesByStockSinceInstant(@NonNull Stock stock, @NonNull Instant instant) {
+        return delegate.findTradesByStockSinceInstant(stock, instant);
+    }
+
+    @Override
+    public TradeAggregate aggregateTradesByStockSinceInstant(@NonNull Stock stock, @NonNull Instant instant) {
+        return delegate.aggregateTradesByStockSinceInstant(stock, instant);
+    }
+
+    @Override
+    public Stream<Trade> findTradesSinceInstant(@NonNull Instant instant) {
+        return delegate.findTradesSinceInstant(instant);
+    }
+}
@@ -0,0 +1,476 @@
+package com.jpmorgan.sssm.repository;
+
+import com.jpmorgan.sssm.model.MutableTrade;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import com.jpmorgan.sssm.model.TradeIndicator;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.jpmorgan.sssm.math.FixedPointMath.CURRENCY_SCALE;
+
+/**
+ * Copy-on-write chain of direct {@link ByteBuffer} segments holding the trades of a single stock outside of the Java heap.
+ * <p>
+ * Each trade is encoded as a fixed size record:
+ * <pre>
+ * | epoch second (8) | nanos (4) | quantity (4) | price in cents (8) | indicator (1) | sequence (8) |
+ * </pre>
+ * Only the stock, the segment indexes and the record count live on-heap. Trades are decoded back into {@link Trade} objects
+ * on read.
+ * <p>
+ * Records are kept in timestamp order. In order trades are appended to records after the end of the published version,
+ * leaving the records of published versions untouched. Late trades are held in a small on-heap overlay, encoded the same
+ * way, until {@link #OVERLAY_CAPACITY} of them are pending; they are then merged into the segments in a single pass, which
+ * copies the segments from the first late position onward in bulk. Batches holding late trades are merged straight away.
+ *
+ * @author Anthony Accioly
+ */
+final class OffHeapTradeChain implements VersionedTradeChain {
+
+    static final int RECORD_SIZE = 33;
+    static final int OVERLAY_CAPACITY = 64;
+
+    private static final int EPOCH_SECOND_OFFSET = 0;
+    private static final int NANOS_OFFSET = 8;
+    private static final int QUANTITY_OFFSET = 12;
+    private static final int PRICE_OFFSET = 16;
+    private static final int INDICATOR_OFFSET = 24;
+    private static final int SEQUENCE_OFFSET = 25;
+
+    private static final TradeIndicator[] INDICATORS = TradeIndicator.values();
+
+    private final Stock stock;
+    private final int recordsPerSegment;
+    private volatile Version current;
+
+    OffHeapTradeChain(@NonNull Stock stock, int recordsPerSegment) {
+        this.stock = stock;
+        this.recordsPerSegment = recordsPerSegment;
+        this.current = new Version(new ByteBuffer[0], 0, null, Long.MAX_VALUE, Long.MIN_VALUE);
+    }
+
+    @Override
+    public TimelineVersion current() {
+        return current;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ArithmeticException if the price in cents does not fit in a {@code long}
+     */
+    @Override
+    public synchronized void insert(@NonNull Trade trade, long sequence) {
+        current = inserted(current, trade.getTimestamp().getEpochSecond(), trade.getTimestamp().getNano(), trade.getQuantity(),
+                trade.getPrice().unscaledValue().longValueExact(), trade.getIndicator(), sequence);
+    }
+
+    /**
+     * Encodes the values of the record straight into the chain, without materializing a {@link Trade}.
+     */
+    @Override
+    public synchronized void insert(@NonNull MutableTrade trade, long sequence) {
+        current = inserted(current, trade.getEpochSecond(), trade.getNanos(), trade.getQuantity(), trade.getPriceInCents(),
+                trade.getIndicator(), sequence);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ArithmeticException if the price in cents of any trade does not fit in a {@code long}
+     */
+    @Override
+    public synchronized void insertAll(@NonNull List<Trade> trades, @NonNull long[] sequences) {
+        final ByteBuffer records = ByteBuffer.allocate(trades.size() * RECORD_SIZE);
+        for (int slot = 0; slot < trades.size(); slot++) {
+            final Trade trade = trades.get(slot);
+            encode(records, slot * RECORD_SIZE, trade.getTimestamp().getEpochSecond(), trade.getTimestamp().getNano(),
+                    trade.getQuantity(), trade.getPrice().unscaledValue().longValueExact(), trade.getIndicator(), sequences[slot]);
+        }
+        insertEncoded(records, trades.size());
+    }
+
+    /**
+     * Encodes the values of the records straight into the chain, without materializing {@link Trade}s.
+     */
+    @Override
+    public synchronized void insertRecords(@NonNull List<MutableTrade> trades, long firstSequence) {
+        final ByteBuffer records = ByteBuffer.allocate(trades.size() * RECORD_SIZE);
+        for (int slot = 0; slot < trades.size(); slot++) {
+            final MutableTrade trade = trades.get(slot);
+            encode(records, slot * RECORD_SIZE, trade.getEpochSecond(), trade.getNanos(), trade.getQuantity(),
+                    trade.getPriceInCents(), trade.getIndicator(), firstSequence + slot);
+        }
+        insertEncoded(records, trades.size());
+    }
+
+    /**
+     * Inserts a batch of encoded records, in any order, and publishes a single new version.
+     */
+    private void insertEncoded(ByteBuffer records, int count) {
+        if (count == 0) {
+            return;
+        }
+        final Integer[] order = new Integer[count];
+        long minSequence = Long.MAX_VALUE;
+        long maxSequence = Long.MIN_VALUE;
+        for (int slot = 0; slot < count; slot++) {
+            order[slot] = slot;
+            final long sequence = records.getLong(slot * RECORD_SIZE + SEQUENCE_OFFSET);
+            minSequence = Math.min(minSequence, sequence);
+            maxSequence = Math.max(maxSequence, sequence);
+        }
+        // Stable, records with the same timestamp keep their relative order
+        Arrays.sort(order, (left, right) -> compare(records, left * RECORD_SIZE, records, right * RECORD_SIZE));
+
+        Version version = current;
+        final int first = order[0] * RECORD_SIZE;
+        if (version.firstRecordAfter(epochSecondOf(records, first), nanosOf(records, first)) == version.size()) {
+            // Every trade goes after the end of the timeline, thus they are appended
+            for (int slot : order) {
+                version = appended(version, records, slot * RECORD_SIZE);
+            }
+        } else {
+            version = merged(version, records, order, minSequence, maxSequence);
+        }
+        current = version;
+    }
+
+    /**
+     * Encodes a trade at its position in the timeline.
+     *
+     * @return the version following the insertion, not yet published
+     */
+    private Version inserted(Version version, long epochSecond, int nanos, int quantity, long priceInCents,
+                             TradeIndicator indicator, long sequence) {
+        final int position = version.firstRecordAfter(epochSecond, nanos);
+        final Overlay overlay = version.overlay;
+
+        if (position == version.size()) {
+            final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            encode(record, 0, epochSecond, nanos, quantity, priceInCents, indicator, sequence);
+            return appended(version, record, 0);
+        }
+        if (overlay == null || overlay.count < OVERLAY_CAPACITY) {
+            final Overlay newOverlay = Overlay.inserted(overlay, position);
+            encode(newOverlay.records, newOverlay.slotOf(position) * RECORD_SIZE, epochSecond, nanos, quantity, priceInCents,
+                    indicator, sequence);
+            return new Version(version.segments, version.stored, newOverlay, Math.min(version.minSequence, sequence),
+                    Math.max(version.maxSequence, sequence));
+        }
+
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        encode(record, 0, epochSecond, nanos, quantity, priceInCents, indicator, sequence);
+        return merged(version, record, new Integer[]{0}, sequence, sequence);
+    }
+
+    /**
+     * Appends a record after the end of the published version, allocating a new segment if the last one is full.
+     *
+     * @return the version following the append, not yet published
+     */
+    private Version appended(Version version, ByteBuffer record, int offset) {
+        ByteBuffer[] segments = version.segments;
+        final int stored = version.stored;
+        if (stored / recordsPerSegment == segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(4, 2 * segments.length));
+        }
+        copyRecords(record, offset, segments, stored, 1);
+
+        final long sequence = record.getLong(offset + SEQUENCE_OFFSET);
+        return new Version(segments, stored + 1, version.overlay, Math.min(version.minSequence, sequence),
+                Math.max(version.maxSequence, sequence));
+    }
+
+    /**
+     * Merges the overlay of a version and a few pending records into new segments, from the first position either of them
+     * changes onward. Pending records go after the records of the version with the same timestamp.
+     *
+     * @param pending heap buffer with the pending records
+     * @param order slots of the pending records in timestamp order
+     *
+     * @return the merged version, without overlay, not yet published
+     */
+    private Version merged(Version version, ByteBuffer pending, Integer[] order, long minSequence, long maxSequence) {
+        final Overlay overlay = version.overlay;
+        final int size = version.size();
+        int start = version.firstRecordAfter(epochSecondOf(pending, order[0] * RECORD_SIZE), nanosOf(pending, order[0] * RECORD_SIZE));
+        if (overlay != null) {
+            start = Math.min(start, overlay.positions[0]);
+        }
+
+        // Records before the start are stored in the segments, only the segment holding the start is copied
+        final int startSegment = start / recordsPerSegment;
+        final int total = size + order.length;
+        final ByteBuffer[] segments = new ByteBuffer[Math.max(version.segments.length, (total + recordsPerSegment - 1) / recordsPerSegment)];
+        System.arraycopy(version.segments, 0, segments, 0, startSegment);
+        int target = startSegment * recordsPerSegment;
+        copyRecords(version.segments, target, segments, target, start - target);
+        target = start;
+
+        int index = start;
+        int next = 0;
+        while (index < size || next < order.length) {
+            final int pendingOffset = next < order.length ? order[next] * RECORD_SIZE : -1;
+            if (pendingOffset >= 0 && (index == size
+                    || compare(pending, pendingOffset, version.bufferOf(index), version.offsetIn(index)) < 0)) {
+                copyRecords(pending, pendingOffset, segments, target++, 1);
+                next++;
+                continue;
+            }
+
+            final int found = overlay == null ? -1 : Arrays.binarySearch(overlay.positions, index);
+            if (found >= 0) {
+                copyRecords(overlay.records, overlay.slots[found] * RECORD_SIZE, segments, target++, 1);
+                index++;
+            } else {
+                // Run of stored records before the next overlay record and the next pending record
+                final int overlayBefore = -found - 1;
+                int end = pendingOffset >= 0
+                        ? version.firstRecordAfter(epochSecondOf(pending, pendingOffset), nanosOf(pending, pendingOffset)) : size;
+                if (overlay != null && overlayBefore < overlay.count) {
+                    end = Math.min(end, overlay.positions[overlayBefore]);
+                }
+                copyRecords(version.segments, index - overlayBefore, segments, target, end - index);
+                target += end - index;
+                index = end;
+            }
+        }
+
+        return new Version(segments, total, null, Math.min(version.minSequence, minSequence), Math.max(version.maxSequence, maxSequence));
+    }
+
+    /**
+     * Copies consecutive records into segments in bulk, allocating the target segments missing.
+     */
+    private void copyRecords(ByteBuffer[] sourceSegments, int from, ByteBuffer[] targetSegments, int to, int count) {
+        while (count > 0) {
+            final int records = Math.min(count, Math.min(recordsPerSegment - from % recordsPerSegment,
+                    recordsPerSegment - to % recordsPerSegment));
+            copyRecords(sourceSegments[from / recordsPerSegment], offsetOf(from), targetSegments, to, records);
+            from += records;
+            to += records;
+            count -= records;
+        }
+    }
+
+    /**
+     * Copies consecutive records of a buffer into a single segment in bulk, allocating it if missing.
+     */
+    private void copyRecords(ByteBuffer source, int offset, ByteBuffer[] targetSegments, int to, int count) {
+        final int segment = to / recordsPerSegment;
+        if (targetSegments[segment] == null) {
+            targetSegments[segment] = ByteBuffer.allocateDirect(recordsPerSegment * RECORD_SIZE);
+        }
+        final ByteBuffer records = source.duplicate();
+        records.limit(offset + count * RECORD_SIZE);
+        records.position(offset);
+        final ByteBuffer target = targetSegments[segment].duplicate();
+        target.position(offsetOf(to));
+        target.put(records);
+    }
+
+    private int offsetOf(int index) {
+        return (index % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    private static void encode(ByteBuffer buffer, int offset, long epochSecond, int nanos, int quantity, long priceInCents,
+                               TradeIndicator indicator, long sequence) {
+        buffer.putLong(offset + EPOCH_SECOND_OFFSET, epochSecond);
+        buffer.putInt(offset + NANOS_OFFSET, nanos);
+        buffer.putInt(offset + QUANTITY_OFFSET, quantity);
+        buffer.putLong(offset + PRICE_OFFSET, priceInCents);
+        buffer.put(offset + INDICATOR_OFFSET, (byte) indicator.ordinal());
+        buffer.putLong(offset + SEQUENCE_OFFSET, sequence);
+    }
+
+    private static long epochSecondOf(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + EPOCH_SECOND_OFFSET);
+    }
+
+    private static int nanosOf(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + NANOS_OFFSET);
+    }
+
+    /**
+     * Compares the timestamps of two records.
+     */
+    private static int compare(ByteBuffer left, int leftOffset, ByteBuffer right, int rightOffset) {
+        final int seconds = Long.compare(epochSecondOf(left, leftOffset), epochSecondOf(right, rightOffset));
+        return seconds != 0 ? seconds : Integer.compare(nanosOf(left, leftOffset), nanosOf(right, rightOffset));
+    }
+
+    /**
+     * Late records not yet merged into the segments, on-heap.
+     */
+    private static final class Overlay {
+        /**
+         * Records in arrival order. Slots after the count are never read, thus the buffer is shared until merged
+         */
+        private final ByteBuffer records;
+        private final int count;
+        /**
+         * Position of each record in the timeline, strictly increasing
+         */
+        private final int[] positions;
+        /**
+         * Slot of the record at each position
+         */
+        private final int[] slots;
+
+        private Overlay(ByteBuffer records, int count, int[] positions, int[] slots) {
+            this.records = records;
+            this.count = count;
+            this.positions = positions;
+            this.slots = slots;
+        }
+
+        /**
+         * Makes room for a record at a position of the timeline, moving the records from it onward one position forward. The
+         * record is then encoded at {@link #slotOf(int)}.
+         */
+        private static Overlay inserted(Overlay overlay, int position) {
+            if (overlay == null) {
+                return new Overlay(ByteBuffer.allocate(OVERLAY_CAPACITY * RECORD_SIZE), 1, new int[]{position}, new int[]{0});
+            }
+
+            final int[] positions = new int[overlay.count + 1];
+            final int[] slots = new int[overlay.count + 1];
+            int to = 0;
+            for (int from = 0; from < overlay.count; from++) {
+                if (to == from && overlay.positions[from] >= position) {
+                    positions[to] = position;
+                    slots[to++] = overlay.count;
+                }
+                positions[to] = overlay.positions[from] + (to > from ? 1 : 0);
+                slots[to++] = overlay.slots[from];
+            }
+            if (to == overlay.count) {
+                positions[to] = position;
+                slots[to] = overlay.count;
+            }
+            return new Overlay(overlay.records, overlay.count + 1, positions, slots);
+        }
+
+        private int slotOf(int position) {
+            return slots[Arrays.binarySearch(positions, position)];
+        }
+    }
+
+    /**
+     * Published, immutable version of the chain.
+     */
+    private final class Version implements TimelineVersion {
+        private final ByteBuffer[] segments;
+        /**
+         * Number of records stored in the segments
+         */
+        private final int stored;
+        private final Overlay overlay;
+        private final long minSequence;
+        private final long maxSequence;
+
+        private Version(ByteBuffer[] segments, int stored, Overlay overlay, long minSequence, long maxSequence) {
+            this.segments = segments;
+            this.stored = stored;
+            this.overlay = overlay;
+            this.minSequence = minSequence;
+            this.maxSequence = maxSequence;
+        }
+
+        @Override
+        public int size() {
+            return overlay == null ? stored : stored + overlay.count;
+        }
+
+        /**
+         * Decodes the trade at a given position of the chain.
+         *
+         * @param index position of the trade, in timestamp order
+         *
+         * @return a new {@link Trade} instance with the recorded values
+         */
+        @Override
+        public Trade get(int index) {
+            checkElementIndex(index, size());
+
+            final ByteBuffer buffer = bufferOf(index);
+            final int offset = offsetIn(index);
+
+            final Instant timestamp = Instant.ofEpochSecond(epochSecondOf(buffer, offset), nanosOf(buffer, offset));
+            final int quantity = buffer.getInt(offset + QUANTITY_OFFSET);
+            final BigDecimal price = BigDecimal.valueOf(buffer.getLong(offset + PRICE_OFFSET), CURRENCY_SCALE);
+            final TradeIndicator indicator = INDICATORS[buffer.get(offset + INDICATOR_OFFSET)];
+
+            return Trade.createOrder(stock, timestamp, quantity, indicator, price);
+        }
+
+        @Override
+        public long sequenceAt(int index) {
+            checkElementIndex(index, size());
+
+            return bufferOf(index).getLong(offsetIn(index) + SEQUENCE_OFFSET);
+        }
+
+        @Override
+        public long minSequence() {
+            return minSequence;
+        }
+
+        @Override
+        public long maxSequence() {
+            return maxSequence;
+        }
+
+        @Override
+        public int firstTradeAfter(@NonNull Instant instant) {
+            return firstRecordAfter(instant.getEpochSecond(), instant.getNano());
+        }
+
+        private int firstRecordAfter(long epochSecond, int nanos) {
+            int low = 0;
+            int high = size();
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                final ByteBuffer buffer = bufferOf(middle);
+                final int offset = offsetIn(middle);
+                final long middleEpochSecond = epochSecondOf(buffer, offset);
+                if (middleEpochSecond > epochSecond || (middleEpochSecond == epochSecond && nanosOf(buffer, offset) > nanos)) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return the buffer holding the record at a given position, either a segment or the overlay
+         */
+        private ByteBuffer bufferOf(int index) {
+            if (overlay == null) {
+                return segments[index / recordsPerSegment];
+            }
+            final int found = Arrays.binarySearch(overlay.positions, index);
+            return found >= 0 ? overlay.records : segments[(index + found + 1) / recordsPerSegment];
+        }
+
+        /**
+         * @return the offset of the record at a given position within {@link #bufferOf(int)}
+         */
+        private int offsetIn(int index) {
+            if (overlay == null) {
+                return offsetOf(index);
+            }
+            final int found = Arrays.binarySearch(overlay.positions, index);
+            return found >= 0 ? overlay.slots[found] * RECORD_SIZE : offsetOf(index + found + 1);
+        }
+    }
+}
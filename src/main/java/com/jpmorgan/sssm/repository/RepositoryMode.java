@@ -0,0 +1,27 @@
+package com.jpmorgan.sssm.repository;
+
+/**
+ * Trade-off between recording and querying made by a repository for each stock.
+ *
+ * @author Anthony Accioly
+ */
+public enum RepositoryMode {
+
+    /**
+     * Trades are only appended. Aggregates, such as the volume of the trades within the VWAP time period, are computed
+     * from the trades on every query.
+     */
+    WRITE_OPTIMIZED,
+
+    /**
+     * Running totals of volume and turnover are maintained on every recorded trade, so that aggregates over any period
+     * are answered with a binary search and a subtraction.
+     */
+    READ_OPTIMIZED,
+
+    /**
+     * Starts write-optimized and maintains running totals only for the stocks queried often enough, relative to how often
+     * they are traded.
+     */
+    ADAPTIVE
+}
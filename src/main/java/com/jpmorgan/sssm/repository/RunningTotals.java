@@ -0,0 +1,147 @@
+package com.jpmorgan.sssm.repository;
+
+import com.jpmorgan.sssm.model.Trade;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static com.jpmorgan.sssm.math.FixedPointMath.CURRENCY_SCALE;
+
+/**
+ * Copy-on-write running totals (prefix sums) of volume and turnover in cents over a {@link TimelineVersion}.
+ * <p>
+ * Position {@code i} holds the totals of the trades from the start of the timeline up to {@code i} (inclusive), so that the
+ * totals of any range are the difference of two positions. Totals are kept in chunks, like {@link InMemoryTradeChain}:
+ * appends write past the end of the published totals, late trades copy the chunks from their position onward.
+ * <p>
+ * Totals are exact; methods building new totals return {@code null} if they would overflow a {@code long}.
+ *
+ * @author Anthony Accioly
+ */
+final class RunningTotals {
+
+    private static final int CHUNK_SIZE = InMemoryTradeChain.CHUNK_SIZE;
+
+    static final RunningTotals EMPTY = new RunningTotals(new long[0][], new long[0][], 0, Long.MIN_VALUE, 0);
+
+    private final long[][] volumes;
+    private final long[][] turnovers;
+    private final int size;
+    private final long lastEpochSecond;
+    private final int lastNanos;
+
+    private RunningTotals(long[][] volumes, long[][] turnovers, int size, long lastEpochSecond, int lastNanos) {
+        this.volumes = volumes;
+        this.turnovers = turnovers;
+        this.size = size;
+        this.lastEpochSecond = lastEpochSecond;
+        this.lastNanos = lastNanos;
+    }
+
+    /**
+     * @return {@code true} if a trade with the given timestamp would be appended to the end of the timeline
+     */
+    boolean isInOrder(long epochSecond, int nanos) {
+        return epochSecond > lastEpochSecond || (epochSecond == lastEpochSecond && nanos >= lastNanos);
+    }
+
+    /**
+     * Adds a trade to the end of the timeline.
+     *
+     * @return the totals following the trade, or {@code null} if they overflow
+     */
+    RunningTotals appended(long epochSecond, int nanos, int quantity, long priceInCents) {
+        final long volume;
+        final long turnover;
+        try {
+            volume = Math.addExact(volumeAt(size - 1), quantity);
+            turnover = Math.addExact(turnoverAt(size - 1), Math.multiplyExact(priceInCents, quantity));
+        } catch (ArithmeticException e) {
+            return null;
+        }
+
+        long[][] volumes = this.volumes;
+        long[][] turnovers = this.turnovers;
+        final int chunk = size / CHUNK_SIZE;
+        if (chunk == volumes.length) {
+            volumes = Arrays.copyOf(volumes, Math.max(4, 2 * volumes.length));
+            turnovers = Arrays.copyOf(turnovers, volumes.length);
+        }
+        if (size % CHUNK_SIZE == 0) {
+            volumes[chunk] = new long[CHUNK_SIZE];
+            turnovers[chunk] = new long[CHUNK_SIZE];
+        }
+        volumes[chunk][size % CHUNK_SIZE] = volume;
+        turnovers[chunk][size % CHUNK_SIZE] = turnover;
+
+        return new RunningTotals(volumes, turnovers, size + 1, epochSecond, nanos);
+    }
+
+    /**
+     * Recomputes the totals of a new version of the timeline from a given position, keeping the totals before it.
+     *
+     * @param version the new version, identical to the previous one before {@code from}
+     * @param from position of the first trade that changed
+     *
+     * @return the totals of the version, or {@code null} if they overflow
+     */
+    RunningTotals updated(TimelineVersion version, int from) {
+        final TimelineVersion pinned = version.pinned();
+        final int newSize = version.size();
+        final int chunks = (newSize + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final long[][] newVolumes = Arrays.copyOf(volumes, Math.max(volumes.length, chunks));
+        final long[][] newTurnovers = Arrays.copyOf(turnovers, newVolumes.length);
+
+        long volume = volumeAt(from - 1);
+        long turnover = turnoverAt(from - 1);
+        try {
+            for (int chunk = from / CHUNK_SIZE; chunk < chunks; chunk++) {
+                final long[] chunkVolumes = new long[CHUNK_SIZE];
+                final long[] chunkTurnovers = new long[CHUNK_SIZE];
+                int index = chunk * CHUNK_SIZE;
+                for (; index < from; index++) {
+                    chunkVolumes[index % CHUNK_SIZE] = volumes[chunk][index % CHUNK_SIZE];
+                    chunkTurnovers[index % CHUNK_SIZE] = turnovers[chunk][index % CHUNK_SIZE];
+                }
+                for (; index < Math.min(newSize, (chunk + 1) * CHUNK_SIZE); index++) {
+                    final Trade trade = pinned.get(index);
+                    volume = Math.addExact(volume, trade.getQuantity());
+                    turnover = Math.addExact(turnover,
+                            Math.multiplyExact(trade.getPrice().unscaledValue().longValueExact(), trade.getQuantity()));
+                    chunkVolumes[index % CHUNK_SIZE] = volume;
+                    chunkTurnovers[index % CHUNK_SIZE] = turnover;
+                }
+                newVolumes[chunk] = chunkVolumes;
+                newTurnovers[chunk] = chunkTurnovers;
+            }
+        } catch (ArithmeticException e) {
+            return null;
+        }
+
+        if (newSize == 0) {
+            return EMPTY;
+        }
+        final Instant last = version.get(newSize - 1).getTimestamp();
+        return new RunningTotals(newVolumes, newTurnovers, newSize, last.getEpochSecond(), last.getNano());
+    }
+
+    /**
+     * @param from position of the first trade (inclusive)
+     *
+     * @return the totals of the trades from a given position to the end of the timeline
+     */
+    TradeAggregate aggregate(int from) {
+        final long volume = volumeAt(size - 1) - volumeAt(from - 1);
+        return volume == 0 ? TradeAggregate.EMPTY
+                : new TradeAggregate(volume, BigDecimal.valueOf(turnoverAt(size - 1) - turnoverAt(from - 1), CURRENCY_SCALE));
+    }
+
+    private long volumeAt(int index) {
+        return index < 0 ? 0 : volumes[index / CHUNK_SIZE][index % CHUNK_SIZE];
+    }
+
+    private long turnoverAt(int index) {
+        return index < 0 ? 0 : turnovers[index / CHUNK_SIZE][index % CHUNK_SIZE];
+    }
+}
@@ -0,0 +1,89 @@
+package com.jpmorgan.sssm.repository;
+
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import lombok.NonNull;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Interface for read-only operations on the history of stocks and associated trades.
+ *
+ * @author Anthony Accioly
+ */
+public interface StockHistory {
+
+    /**
+     * Returns all stocks traded in Global Beverage Corporation Exchange stock market.
+     * <p>
+     * Stocks are equal by symbol. Each one is the current version published in the {@link StockReferenceRepository} of the
+     * repository, like the stock of every trade returned, or the version of the first trade recorded for its symbol when no
+     * reference data was published.
+     *
+     * @return A Set with one instance of each stock traded in the stock market. The resulting set may be empty.
+     */
+    Set<Stock> findAllStocks();
+
+    /**
+     * Returns all trades for a specific {@code Stock}.
+     *
+     * @param stock the stock to search
+     *
+     * @return A collection with every trade recorded for the given stock. The resulting collection may be empty.
+     */
+    Collection<Trade> findTradesByStock(@NonNull Stock stock);
+
+    /**
+     * Returns all recent trades (that is, after a given @{code instant}) for a specific {@code Stock}.
+     *
+     * @param stock the stock to search
+     * @param instant time used to filter trades (non-inclusive)
+     *
+     * @return A collection with every trade recorded for the given stock. The resulting collection may be empty.
+     */
+    Collection<Trade> findTradesByStockSinceInstant(@NonNull Stock stock, @NonNull Instant instant);
+
+    /**
+     * Returns the totals of the recent trades (that is, after a given @{code instant}) for a specific {@code Stock}.
+     * <p>
+     * Read-optimized repositories answer without iterating the trades (see {@link RepositoryMode}).
+     *
+     * @param stock the stock to search
+     * @param instant time used to filter trades (non-inclusive)
+     *
+     * @return the volume and turnover of the trades recorded for the given stock, {@link TradeAggregate#EMPTY} if there are none
+     */
+    default TradeAggregate aggregateTradesByStockSinceInstant(@NonNull Stock stock, @NonNull Instant instant) {
+        return TradeAggregate.of(findTradesByStockSinceInstant(stock, instant));
+    }
+
+    /**
+     * Returns all recent trades (that is, after a given @{code instant}) across every stock, in timestamp order.
+     * <p>
+     * Trades with the same timestamp have no particular order between stocks. The stream is lazy, trades are fetched as it is
+     * consumed.
+     *
+     * @param instant time used to filter trades (non-inclusive)
+     *
+     * @return An ordered stream with every trade recorded after the given instant. The resulting stream may be empty.
+     */
+    Stream<Trade> findTradesSinceInstant(@NonNull Instant instant);
+
+    /**
+     * Returns a page of recent trades (that is, after a given @{code instant}) across every stock, in timestamp order.
+     *
+     * @param instant time used to filter trades (non-inclusive)
+     * @param offset number of leading trades to skip
+     * @param limit maximum number of trades to return
+     *
+     * @return An ordered stream with at most {@code limit} trades. The resulting stream may be empty.
+     *
+     * @see #findTradesSinceInstant(Instant)
+     */
+    default Stream<Trade> findTradesSinceInstant(@NonNull Instant instant, long offset, long limit) {
+        return findTradesSinceInstant(instant).skip(offset).limit(limit);
+    }
+}
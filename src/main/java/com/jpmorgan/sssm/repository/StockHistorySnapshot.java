@@ -0,0 +1,137 @@
+package com.jpmorgan.sssm.repository;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import lombok.NonNull;
+
+import java.time.Instant;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Consistent, read-only cut of the trade history.
+ * <p>
+ * Holds one {@link TimelineVersion} per stock plus the sequence number of the cut. Versions may contain trades recorded
+ * while the snapshot was being taken; those have sequence numbers after the cut and are left out of every query.
+ *
+ * @author Anthony Accioly
+ */
+final class StockHistorySnapshot implements StockHistory {
+
+    private final ImmutableMap<Stock, TimelineVersion> versions;
+    private final long cut;
+
+    StockHistorySnapshot(@NonNull ImmutableMap<Stock, TimelineVersion> versions, long cut) {
+        this.versions = versions;
+        this.cut = cut;
+    }
+
+    @Override
+    public Set<Stock> findAllStocks() {
+        return versions.keySet();
+    }
+
+    @Override
+    public Collection<Trade> findTradesByStock(@NonNull Stock stock) {
+        final TimelineVersion version = versions.get(stock);
+
+        return version != null ? view(version, 0, cut) : Collections.emptyList();
+    }
+
+    @Override
+    public Collection<Trade> findTradesByStockSinceInstant(@NonNull Stock stock, @NonNull Instant instant) {
+        final TimelineVersion version = versions.get(stock);
+
+        return version != null ? view(version, version.firstTradeAfter(instant), cut) : Collections.emptyList();
+    }
+
+    @Override
+    public TradeAggregate aggregateTradesByStockSinceInstant(@NonNull Stock stock, @NonNull Instant instant) {
+        final TimelineVersion version = versions.get(stock);
+
+        return version != null ? version.aggregate(version.firstTradeAfter(instant), cut) : TradeAggregate.EMPTY;
+    }
+
+    @Override
+    public Stream<Trade> findTradesSinceInstant(@NonNull Instant instant) {
+        return TradeTimeline.merge(versions.values().stream()
+                .map(version -> view(version, version.firstTradeAfter(instant), cut).iterator())
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns the unmodifiable view of a version, from a given position to the end of the timeline.
+     * <p>
+     * Trades are fetched lazily, each iterator holding what it decodes, unless the version holds trades after the cut, in
+     * which case the remaining trades are copied.
+     *
+     * @param version the version of the stock timeline
+     * @param from position of the first trade (inclusive)
+     * @param cut highest sequence number visible
+     *
+     * @return the trades in the range with a sequence number up to the cut, in timestamp order
+     */
+    static Collection<Trade> view(@NonNull TimelineVersion version, int from, long cut) {
+        if (version.maxSequence() <= cut) {
+            return new TimelineView(version, from, version.size());
+        }
+
+        final TimelineVersion pinned = version.pinned();
+        final ImmutableList.Builder<Trade> visible = ImmutableList.builder();
+        for (int index = from; index < pinned.size(); index++) {
+            if (pinned.sequenceAt(index) <= cut) {
+                visible.add(pinned.get(index));
+            }
+        }
+        return visible.build();
+    }
+
+    /**
+     * Unmodifiable, lazy view over a range of a timeline version.
+     */
+    private static final class TimelineView extends AbstractCollection<Trade> {
+        private final TimelineVersion version;
+        private final int from;
+        private final int to;
+
+        private TimelineView(TimelineVersion version, int from, int to) {
+            this.version = version;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Iterator<Trade> iterator() {
+            return new Iterator<Trade>() {
+                private final TimelineVersion pinned = version.pinned();
+                private int next = from;
+
+                @Override
+                public boolean hasNext() {
+                    return next < to;
+                }
+
+                @Override
+                public Trade next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return pinned.get(next++);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.jpmorgan.sssm.repository;
+
+import com.jpmorgan.sssm.model.Stock;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Immutable version of the reference data (dividends and par value) of a stock.
+ *
+ * @author Anthony Accioly
+ */
+@Value
+public class StockReference {
+
+    @NonNull private final Stock stock;
+    /**
+     * Version of the reference data, starting at 1 and increased by every update of the stock.
+     */
+    private final long version;
+}
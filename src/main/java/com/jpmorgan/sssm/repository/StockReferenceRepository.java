@@ -0,0 +1,45 @@
+package com.jpmorgan.sssm.repository;
+
+import com.jpmorgan.sssm.model.Stock;
+import lombok.NonNull;
+
+import java.util.Optional;
+
+/**
+ * Interface for a versioned store of stock reference data, keyed by symbol.
+ * <p>
+ * Trade histories reference stocks by symbol only, thus declaring a new dividend is a single update here and never
+ * rewrites recorded trades. Stock repositories resolve the stocks they return against their reference data, so that
+ * dividend yield and P/E Ratio are computed with the current version.
+ *
+ * @author Anthony Accioly
+ */
+public interface StockReferenceRepository {
+
+    /**
+     * Publishes new reference data for a stock, replacing the current version for its symbol.
+     *
+     * @param stock the stock with its new dividends and par value
+     *
+     * @return the new version of the reference data
+     */
+    StockReference update(@NonNull Stock stock);
+
+    /**
+     * @param symbol the stock symbol
+     *
+     * @return the current reference data of the stock, empty if it was never published
+     */
+    Optional<StockReference> findBySymbol(@NonNull String symbol);
+
+    /**
+     * Resolves a stock to the current version of its reference data.
+     *
+     * @param stock any version of the stock, e.g., the one held by a recorded trade
+     *
+     * @return the current version of the stock, or the stock itself if no reference data was published for its symbol
+     */
+    default Stock resolve(@NonNull Stock stock) {
+        return findBySymbol(stock.getSymbol()).map(StockReference::getStock).orElse(stock);
+    }
+}
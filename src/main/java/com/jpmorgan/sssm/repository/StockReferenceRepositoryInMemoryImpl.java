@@ -0,0 +1,40 @@
+package com.jpmorgan.sssm.repository;
+
+import com.jpmorgan.sssm.model.Stock;
+import lombok.NonNull;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory implementation of a store for stock reference data.
+ * <p>
+ * Updates replace a single map entry per symbol and are safe for concurrent use.
+ *
+ * @author Anthony Accioly
+ */
+public final class StockReferenceRepositoryInMemoryImpl implements StockReferenceRepository {
+
+    private static final StockReferenceRepositoryInMemoryImpl INSTANCE = new StockReferenceRepositoryInMemoryImpl();
+
+    /**
+     * @return the shared store, which stocks of the shared {@link StockRepositoryInMemoryImpl} are resolved against
+     */
+    public static StockReferenceRepository getInstance() {
+        return INSTANCE;
+    }
+
+    private final ConcurrentMap<String, StockReference> referencesBySymbol = new ConcurrentHashMap<>();
+
+    @Override
+    public StockReference update(@NonNull Stock stock) {
+        return referencesBySymbol.compute(stock.getSymbol(),
+                (symbol, current) -> new StockReference(stock, current != null ? current.getVersion() + 1 : 1));
+    }
+
+    @Override
+    public Optional<StockReference> findBySymbol(@NonNull String symbol) {
+        return Optional.ofNullable(referencesBySymbol.get(symbol));
+    }
+}
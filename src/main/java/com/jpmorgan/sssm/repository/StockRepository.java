@@ -1,19 +1,22 @@
 package com.jpmorgan.sssm.repository;
 
-import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.MutableTrade;
 import com.jpmorgan.sssm.model.Trade;
 import lombok.NonNull;
 
-import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Set;
+import java.util.List;
 
 /**
  * Interface for generic operations on a repository for stocks and associated trades.
+ * <p>
+ * Queries on the repository itself reflect every trade recorded so far. Queries that must agree with each other (e.g., the
+ * VWAP of every stock in an index) should run against a {@link #snapshot()}.
  *
  * @author Anthony Accioly
  */
-public interface StockRepository {
+public interface StockRepository extends StockHistory {
 
     /**
      * Records a trade in the repository.
@@ -24,28 +27,55 @@ public interface StockRepository {
     void record(@NonNull Trade trade);
 
     /**
-     * Returns all stocks traded in Global Beverage Corporation Exchange stock market.
+     * Records a trade held in a reusable record, e.g., by a feed handler.
+     * <p>
+     * Implementations able to store the values of the record as they are avoid materializing a {@link Trade}; by default
+     * the record is converted. The record may be reused as soon as this method returns.
      *
-     * @return A Set with one instance of each stock traded in the stock market. The resulting set may be empty.
+     * @param trade the values of the trade to be recorded.
      */
-    Set<Stock> findAllStocks();
+    default void record(@NonNull MutableTrade trade) {
+        record(trade.toTrade());
+    }
 
     /**
-     * Returns all trades for a specific {@code Stock}.
+     * Records a batch of trades in the repository, e.g., when bulk loading a trade file.
+     * <p>
+     * Implementations may store the batch more efficiently than one trade at a time; by default trades are recorded in order.
      *
-     * @param stock the stock to search
-     *
-     * @return A collection with every trade recorded for the given stock. The resulting collection may be empty.
+     * @param trades the trades to be recorded.
      */
-    Collection<Trade> findTradesByStock(@NonNull Stock stock);
+    default void recordAll(@NonNull Collection<Trade> trades) {
+        trades.forEach(this::record);
+    }
 
     /**
-     * Returns all recent trades (that is, after a given @{code instant}) for a specific {@code Stock}.
+     * Records a batch of trades held in reusable records, e.g., when bulk loading a trade file.
+     * <p>
+     * Implementations able to store the values of the records as they are avoid materializing {@link Trade}s; by default
+     * the records are converted and recorded with {@link #recordAll(Collection)}. Records may be reused as soon as this
+     * method returns.
      *
-     * @param stock the stock to search
-     * @param instant time used to filter trades (non-inclusive)
+     * @param trades the values of the trades to be recorded.
+     * @param count the number of records to be recorded, from the start of the array.
+     */
+    default void recordAll(@NonNull MutableTrade[] trades, int count) {
+        final List<Trade> materialized = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            materialized.add(trades[index].toTrade());
+        }
+        recordAll(materialized);
+    }
+
+    /**
+     * Returns a consistent, read-only cut of the trade history.
+     * <p>
+     * The snapshot contains every trade whose recording returned before this method was called and none of the trades
+     * recorded after it returns. Each trade recorded concurrently is either completely visible or not visible at all, but
+     * independently of the others: a trade still being recorded may be missing while a later one, on another stock, is
+     * visible. Taking a snapshot doesn't block writers nor copy the trade history.
      *
-     * @return A collection with every trade recorded for the given stock. The resulting collection may be empty.
+     * @return an immutable view of the trade history
      */
-    Collection<Trade> findTradesByStockSinceInstant(@NonNull Stock stock, @NonNull Instant instant);
+    StockHistory snapshot();
 }
@@ -1,64 +1,72 @@
 package com.jpmorgan.sssm.repository;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
 import com.jpmorgan.sssm.model.Stock;
-import com.jpmorgan.sssm.model.Trade;
 import lombok.NonNull;
 
-import java.time.Instant;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Set;
-import java.util.stream.Collectors;
-
 /**
  * In-memory implementation of a repository for stocks and trades.
  * <p>
  * All returned collections are unmodifiable by design.
+ * <p>
+ * Trades of each stock are kept in timestamp order in an {@link InMemoryTradeChain}. Trades usually arrive in order and are
+ * appended; late trades are inserted at their position in the timeline. Time based queries binary search the start of the
+ * requested period.
+ * <p>
+ * The shared instance is write-optimized, other {@link RepositoryMode}s are available through {@link #create(RepositoryMode)}.
+ * <p>
+ * Safe for concurrent use: readers work over immutable versions of each chain and are never blocked by writers.
  *
  * @author Anthony Accioly
  */
-public final class StockRepositoryInMemoryImpl implements StockRepository {
+public final class StockRepositoryInMemoryImpl extends VersionedStockRepository<InMemoryTradeChain> {
 
-    private static final StockRepository INSTANCE = new StockRepositoryInMemoryImpl(ArrayListMultimap.create());
+    private static final StockRepositoryInMemoryImpl INSTANCE = new StockRepositoryInMemoryImpl(RepositoryMode.WRITE_OPTIMIZED,
+            StockReferenceRepositoryInMemoryImpl.getInstance());
 
+    /**
+     * @return the shared, write-optimized repository, resolving stocks against the shared
+     * {@link StockReferenceRepositoryInMemoryImpl}
+     */
     public static StockRepository getInstance() {
         return INSTANCE;
     }
 
-    private final Multimap<Stock, Trade> tradingHistory;
-
-    private StockRepositoryInMemoryImpl(Multimap<Stock, Trade> stocks) {
-        this.tradingHistory = stocks;
-    }
-
-    @Override
-    public void record(@NonNull Trade trade) {
-        tradingHistory.put(trade.getStock(), trade);
+    /**
+     * Creates a new repository, independent from the shared instance.
+     *
+     * @param mode trade-off between recording and querying
+     *
+     * @return an empty repository
+     */
+    public static StockRepository create(@NonNull RepositoryMode mode) {
+        return create(mode, new StockReferenceRepositoryInMemoryImpl());
     }
 
-    @Override
-    public Set<Stock> findAllStocks() {
-        return Collections.unmodifiableSet(tradingHistory.keySet());
+    /**
+     * Creates a new repository, independent from the shared instance.
+     *
+     * @param mode trade-off between recording and querying
+     * @param stockReferenceRepository the reference data returned stocks are resolved against
+     *
+     * @return an empty repository
+     */
+    public static StockRepository create(@NonNull RepositoryMode mode, @NonNull StockReferenceRepository stockReferenceRepository) {
+        return new StockRepositoryInMemoryImpl(mode, stockReferenceRepository);
     }
 
-    @Override
-    public Collection<Trade> findTradesByStock(@NonNull Stock stock) {
-        return Collections.unmodifiableCollection(tradingHistory.get(stock));
+    private StockRepositoryInMemoryImpl(RepositoryMode mode, StockReferenceRepository stockReferenceRepository) {
+        super(mode, stockReferenceRepository);
     }
 
     @Override
-    public Collection<Trade> findTradesByStockSinceInstant(@NonNull Stock stock, @NonNull Instant instant) {
-        return Collections.unmodifiableCollection(tradingHistory.get(stock).stream()
-                .filter(trade -> trade.getTimestamp().isAfter(instant))
-                .collect(Collectors.toList()));
+    protected InMemoryTradeChain newChain(@NonNull Stock stock) {
+        return new InMemoryTradeChain(stock);
     }
 
     @VisibleForTesting
     public void clearHistory() {
-        tradingHistory.clear();
+        clear();
     }
 
 }
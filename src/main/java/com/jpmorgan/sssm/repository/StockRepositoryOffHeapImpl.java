@@ -0,0 +1,72 @@
+package com.jpmorgan.sssm.repository;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.jpmorgan.sssm.model.Stock;
+import lombok.NonNull;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Off-heap implementation of a repository for stocks and trades.
+ * <p>
+ * Trades are stored in chains of direct {@link java.nio.ByteBuffer} segments, one chain per stock, so that the size of the
+ * trade history has no influence over garbage collection. Only stocks and segment indexes are kept on-heap.
+ * <p>
+ * Returned collections are unmodifiable, lazy views over the trades recorded at the time of the query. Trades are decoded
+ * on read, thus views should be iterated rather than kept around. Chains are kept in timestamp order, time based queries
+ * binary search the start of the requested period.
+ * <p>
+ * Safe for concurrent use: readers work over immutable versions of each chain and are never blocked by writers.
+ *
+ * @author Anthony Accioly
+ */
+public final class StockRepositoryOffHeapImpl extends VersionedStockRepository<OffHeapTradeChain> {
+
+    /**
+     * Default number of trades per direct buffer segment (~132KB segments)
+     */
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 4096;
+
+    public static StockRepository create() {
+        return create(DEFAULT_RECORDS_PER_SEGMENT);
+    }
+
+    public static StockRepository create(int recordsPerSegment) {
+        return create(recordsPerSegment, RepositoryMode.WRITE_OPTIMIZED);
+    }
+
+    public static StockRepository create(@NonNull RepositoryMode mode) {
+        return create(DEFAULT_RECORDS_PER_SEGMENT, mode);
+    }
+
+    public static StockRepository create(@NonNull StockReferenceRepository stockReferenceRepository) {
+        return create(DEFAULT_RECORDS_PER_SEGMENT, RepositoryMode.WRITE_OPTIMIZED, stockReferenceRepository);
+    }
+
+    public static StockRepository create(int recordsPerSegment, @NonNull RepositoryMode mode) {
+        return create(recordsPerSegment, mode, new StockReferenceRepositoryInMemoryImpl());
+    }
+
+    public static StockRepository create(int recordsPerSegment, @NonNull RepositoryMode mode,
+                                         @NonNull StockReferenceRepository stockReferenceRepository) {
+        checkArgument(recordsPerSegment > 0, "Segments have to hold at least one trade");
+        return new StockRepositoryOffHeapImpl(recordsPerSegment, mode, stockReferenceRepository);
+    }
+
+    private final int recordsPerSegment;
+
+    private StockRepositoryOffHeapImpl(int recordsPerSegment, RepositoryMode mode, StockReferenceRepository stockReferenceRepository) {
+        super(mode, stockReferenceRepository);
+        this.recordsPerSegment = recordsPerSegment;
+    }
+
+    @Override
+    protected OffHeapTradeChain newChain(@NonNull Stock stock) {
+        return new OffHeapTradeChain(stock, recordsPerSegment);
+    }
+
+    @VisibleForTesting
+    public void clearHistory() {
+        clear();
+    }
+}
@@ -0,0 +1,77 @@
+package com.jpmorgan.sssm.repository;
+
+import com.jpmorgan.sssm.model.Trade;
+import lombok.NonNull;
+
+import java.time.Instant;
+
+/**
+ * Immutable version of the timestamp ordered trades of a single stock.
+ * <p>
+ * Besides the trade itself, each position holds the sequence number assigned to the trade when it was recorded, so that
+ * snapshots can leave out trades recorded after them.
+ *
+ * @author Anthony Accioly
+ */
+interface TimelineVersion {
+
+    /**
+     * @return number of trades in this version
+     */
+    int size();
+
+    /**
+     * @param index position of the trade, in timestamp order
+     *
+     * @return the trade at the given position
+     */
+    Trade get(int index);
+
+    /**
+     * @param index position of the trade, in timestamp order
+     *
+     * @return the sequence number of the trade at the given position
+     */
+    long sequenceAt(int index);
+
+    /**
+     * @return the lowest sequence number in this version
+     */
+    long minSequence();
+
+    /**
+     * @return the highest sequence number in this version
+     */
+    long maxSequence();
+
+    /**
+     * Binary searches the timeline.
+     *
+     * @param instant time used to search the timeline (non-inclusive)
+     *
+     * @return position of the first trade after {@code instant}, or the size of the version if there is none
+     */
+    int firstTradeAfter(@NonNull Instant instant);
+
+    /**
+     * Returns a version holding whatever it decodes for as long as it is referenced, meant for reading a range of positions.
+     * By default the version itself.
+     *
+     * @return a version with the trades and sequence numbers of this one
+     */
+    default TimelineVersion pinned() {
+        return this;
+    }
+
+    /**
+     * Computes the totals of the trades from a given position to the end of the timeline, by default summing every trade.
+     *
+     * @param from position of the first trade (inclusive)
+     * @param cut highest sequence number visible
+     *
+     * @return the totals of the trades in the range with a sequence number up to the cut
+     */
+    default TradeAggregate aggregate(int from, long cut) {
+        return TradeAggregate.of(StockHistorySnapshot.view(this, from, cut));
+    }
+}
@@ -0,0 +1,54 @@
+package com.jpmorgan.sssm.repository;
+
+import com.jpmorgan.sssm.model.Trade;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+import static com.jpmorgan.sssm.math.FixedPointMath.CURRENCY_SCALE;
+import static com.jpmorgan.sssm.math.FixedPointMath.ROUNDING_MODE;
+
+/**
+ * Totals of a set of trades, usually of a single stock over a period of time.
+ *
+ * @author Anthony Accioly
+ */
+@Value
+public class TradeAggregate {
+
+    public static final TradeAggregate EMPTY = new TradeAggregate(0, BigDecimal.valueOf(0, CURRENCY_SCALE));
+
+    /**
+     * Total number of shares traded.
+     */
+    private final long volume;
+    /**
+     * Sum of price times quantity of every trade, scaled to {@link com.jpmorgan.sssm.math.FixedPointMath#CURRENCY_SCALE}.
+     */
+    @NonNull private final BigDecimal turnover;
+
+    /**
+     * Computes the totals of a collection of trades.
+     *
+     * @param trades the trades
+     *
+     * @return the totals, {@link #EMPTY} if there are no trades
+     */
+    public static TradeAggregate of(@NonNull Iterable<Trade> trades) {
+        long volume = 0;
+        BigDecimal turnover = EMPTY.turnover;
+        for (Trade trade : trades) {
+            volume += trade.getQuantity();
+            turnover = turnover.add(trade.getPrice().multiply(BigDecimal.valueOf(trade.getQuantity())));
+        }
+        return volume == 0 ? EMPTY : new TradeAggregate(volume, turnover);
+    }
+
+    /**
+     * @return the volume weighted price of the trades, 0.00 if there are no trades
+     */
+    public BigDecimal volumeWeightedPrice() {
+        return volume == 0 ? EMPTY.turnover : turnover.divide(BigDecimal.valueOf(volume), CURRENCY_SCALE, ROUNDING_MODE);
+    }
+}
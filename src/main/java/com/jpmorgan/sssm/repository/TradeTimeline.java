@@ -0,0 +1,56 @@
+package com.jpmorgan.sssm.repository;
+
+import com.google.common.collect.Iterators;
+import com.jpmorgan.sssm.model.Trade;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Shared operations over timestamp ordered trade histories.
+ *
+ * @author Anthony Accioly
+ */
+@UtilityClass
+class TradeTimeline {
+
+    static final Comparator<Trade> TIMESTAMP_ORDER = Comparator.comparing(Trade::getTimestamp);
+
+    /**
+     * Sorts the positions of a list of trades by timestamp, trades with the same timestamp keeping their relative order.
+     *
+     * @param trades the trades, in any order
+     *
+     * @return the indexes of the trades in timestamp order
+     */
+    static Integer[] timestampOrder(@NonNull List<Trade> trades) {
+        final Integer[] order = new Integer[trades.size()];
+        for (int index = 0; index < order.length; index++) {
+            order[index] = index;
+        }
+        Arrays.sort(order, Comparator.comparing(index -> trades.get(index).getTimestamp()));
+        return order;
+    }
+
+    /**
+     * Lazily merges per-stock trade iterators into a single timeline (k-way merge).
+     *
+     * @param timelines iterators over trades, each one already in timestamp order
+     *
+     * @return an ordered stream with the trades of every timeline, in timestamp order
+     */
+    static Stream<Trade> merge(@NonNull Iterable<Iterator<Trade>> timelines) {
+        final Iterator<Trade> merged = Iterators.mergeSorted(timelines, TIMESTAMP_ORDER);
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+}
@@ -0,0 +1,274 @@
+package com.jpmorgan.sssm.repository;
+
+import com.google.common.collect.ImmutableMap;
+import com.jpmorgan.sssm.model.MutableTrade;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import lombok.NonNull;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkPositionIndex;
+
+/**
+ * Base class for repositories storing each stock in a {@link VersionedTradeChain} (multi-version concurrency control).
+ * <p>
+ * Every trade is given a sequence number before being recorded. A snapshot reads the last sequence number handed out (the
+ * cut) and then the current version of each chain, leaving out trades with sequence numbers after the cut. If recording a
+ * trade returned before the snapshot started, it got a lower sequence number and was published before the versions were
+ * read; any trade started after the cut is ignored. Trades still being published when the snapshot starts are not waited
+ * for: one with a lower sequence number may be missing while a later one, on another stock, is visible. Hence snapshots
+ * never see a trade without the trades whose recording returned before it started, while writers only ever lock the chain
+ * of the stock they write to.
+ * <p>
+ * Depending on the {@link RepositoryMode}, chains are wrapped in an {@link AggregatingTradeChain} keeping running totals
+ * for aggregate queries, or, when write-optimized, in a {@link HotStockTradeChain} splitting the appends of heavily traded
+ * stocks across threads.
+ * <p>
+ * Stocks are resolved against a {@link StockReferenceRepository}: once reference data was published for a symbol, the
+ * stock returned by {@link #findAllStocks()} and the stock of every trade read back are its current version, whichever
+ * version the trades were recorded with. Until then, stocks are returned as they were recorded.
+ *
+ * @param <C> type of the trade chains
+ *
+ * @author Anthony Accioly
+ */
+abstract class VersionedStockRepository<C extends VersionedTradeChain> implements StockRepository {
+
+    private final ConcurrentMap<Stock, VersionedTradeChain> tradingHistory = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Function<Stock, VersionedTradeChain> chainFactory;
+    private final StockReferenceRepository stockReferenceRepository;
+
+    protected VersionedStockRepository(@NonNull RepositoryMode mode, @NonNull StockReferenceRepository stockReferenceRepository) {
+        this.stockReferenceRepository = stockReferenceRepository;
+        switch (mode) {
+            case READ_OPTIMIZED:
+                chainFactory = stock -> new AggregatingTradeChain(newChain(stock), false);
+                break;
+            case ADAPTIVE:
+                chainFactory = stock -> new AggregatingTradeChain(newChain(stock), true);
+                break;
+            default:
+                chainFactory = stock -> new HotStockTradeChain(newChain(stock));
+        }
+    }
+
+    /**
+     * Creates the storage for the trades of a new stock.
+     *
+     * @param stock the stock
+     *
+     * @return an empty chain
+     */
+    protected abstract C newChain(@NonNull Stock stock);
+
+    @Override
+    public void record(@NonNull Trade trade) {
+        final long tradeSequence = sequence.incrementAndGet();
+        chainOf(trade.getStock()).insert(trade, tradeSequence);
+    }
+
+    @Override
+    public void record(@NonNull MutableTrade trade) {
+        final long tradeSequence = sequence.incrementAndGet();
+        chainOf(trade.getStock()).insert(trade, tradeSequence);
+    }
+
+    /**
+     * Records a batch of trades, publishing a single new version per stock.
+     * <p>
+     * Trades of the batch are given consecutive sequence numbers. Snapshots taken while the batch is being recorded may see
+     * the trades of some stocks only.
+     *
+     * @param trades the trades to be recorded.
+     */
+    @Override
+    public void recordAll(@NonNull Collection<Trade> trades) {
+        final Map<Stock, List<Trade>> tradesByStock = new LinkedHashMap<>();
+        for (Trade trade : trades) {
+            tradesByStock.computeIfAbsent(trade.getStock(), stock -> new ArrayList<>()).add(trade);
+        }
+
+        long firstSequence = sequence.getAndAdd(trades.size()) + 1;
+        for (Map.Entry<Stock, List<Trade>> stockTrades : tradesByStock.entrySet()) {
+            chainOf(stockTrades.getKey()).insertAll(stockTrades.getValue(), firstSequence);
+            firstSequence += stockTrades.getValue().size();
+        }
+    }
+
+    /**
+     * Records a batch of reusable trade records, publishing a single new version per stock.
+     * <p>
+     * Records are handed to the chains as they are, so that chains able to store their values avoid materializing
+     * {@link Trade}s. Sequence numbers and visibility are the same as for {@link #recordAll(Collection)}.
+     *
+     * @param trades the values of the trades to be recorded.
+     * @param count the number of records to be recorded, from the start of the array.
+     */
+    @Override
+    public void recordAll(@NonNull MutableTrade[] trades, int count) {
+        checkPositionIndex(count, trades.length, "Count");
+        final Map<Stock, List<MutableTrade>> tradesByStock = new LinkedHashMap<>();
+        for (int index = 0; index < count; index++) {
+            tradesByStock.computeIfAbsent(trades[index].getStock(), stock -> new ArrayList<>()).add(trades[index]);
+        }
+
+        long firstSequence = sequence.getAndAdd(count) + 1;
+        for (Map.Entry<Stock, List<MutableTrade>> stockTrades : tradesByStock.entrySet()) {
+            chainOf(stockTrades.getKey()).insertRecords(stockTrades.getValue(), firstSequence);
+            firstSequence += stockTrades.getValue().size();
+        }
+    }
+
+    /**
+     * Returns the chain of a stock, creating it for new stocks.
+     * <p>
+     * Looks the chain up before computing it, as {@link ConcurrentHashMap#computeIfAbsent} locks the bin of existing keys as
+     * well, which would serialize every writer of a hot stock.
+     */
+    private VersionedTradeChain chainOf(Stock stock) {
+        final VersionedTradeChain chain = tradingHistory.get(stock);
+        return chain != null ? chain : tradingHistory.computeIfAbsent(stock, chainFactory);
+    }
+
+    @Override
+    public StockHistory snapshot() {
+        final long cut = sequence.get();
+
+        final ImmutableMap.Builder<Stock, TimelineVersion> versions = ImmutableMap.builder();
+        tradingHistory.forEach((stock, chain) -> {
+            final TimelineVersion version = chain.current();
+            if (version.size() > 0 && version.minSequence() <= cut) {
+                final Optional<Stock> published = publishedVersionOf(stock);
+                versions.put(published.orElse(stock), resolved(version, published));
+            }
+        });
+        return new StockHistorySnapshot(versions.build(), cut);
+    }
+
+    @Override
+    public Set<Stock> findAllStocks() {
+        return snapshot().findAllStocks();
+    }
+
+    @Override
+    public Collection<Trade> findTradesByStock(@NonNull Stock stock) {
+        final VersionedTradeChain chain = tradingHistory.get(stock);
+
+        return chain != null ? StockHistorySnapshot.view(resolved(chain.current(), publishedVersionOf(stock)), 0, Long.MAX_VALUE)
+                : Collections.emptyList();
+    }
+
+    @Override
+    public Collection<Trade> findTradesByStockSinceInstant(@NonNull Stock stock, @NonNull Instant instant) {
+        final VersionedTradeChain chain = tradingHistory.get(stock);
+        if (chain == null) {
+            return Collections.emptyList();
+        }
+
+        final TimelineVersion version = resolved(chain.current(), publishedVersionOf(stock));
+        return StockHistorySnapshot.view(version, version.firstTradeAfter(instant), Long.MAX_VALUE);
+    }
+
+    @Override
+    public TradeAggregate aggregateTradesByStockSinceInstant(@NonNull Stock stock, @NonNull Instant instant) {
+        final VersionedTradeChain chain = tradingHistory.get(stock);
+        if (chain == null) {
+            return TradeAggregate.EMPTY;
+        }
+
+        final TimelineVersion version = chain.current();
+        return version.aggregate(version.firstTradeAfter(instant), Long.MAX_VALUE);
+    }
+
+    @Override
+    public Stream<Trade> findTradesSinceInstant(@NonNull Instant instant) {
+        return snapshot().findTradesSinceInstant(instant);
+    }
+
+    private Optional<Stock> publishedVersionOf(Stock stock) {
+        return stockReferenceRepository.findBySymbol(stock.getSymbol()).map(StockReference::getStock);
+    }
+
+    private static TimelineVersion resolved(TimelineVersion version, Optional<Stock> published) {
+        return published.<TimelineVersion>map(stock -> new ResolvedVersion(version, stock)).orElse(version);
+    }
+
+    /**
+     * Drops every recorded trade. Not safe to be called while trades are being recorded.
+     */
+    protected void clear() {
+        tradingHistory.clear();
+    }
+
+    /**
+     * Version of a chain whose trades hold the published version of their stock. Trades recorded with another version are
+     * copied on read; aggregates, holding no stock, are left to the underlying version.
+     */
+    private static final class ResolvedVersion implements TimelineVersion {
+        private final TimelineVersion version;
+        private final Stock stock;
+
+        private ResolvedVersion(TimelineVersion version, Stock stock) {
+            this.version = version;
+            this.stock = stock;
+        }
+
+        @Override
+        public int size() {
+            return version.size();
+        }
+
+        @Override
+        public Trade get(int index) {
+            final Trade trade = version.get(index);
+            return trade.getStock() == stock ? trade
+                    : Trade.createOrder(stock, trade.getTimestamp(), trade.getQuantity(), trade.getIndicator(), trade.getPrice());
+        }
+
+        @Override
+        public long sequenceAt(int index) {
+            return version.sequenceAt(index);
+        }
+
+        @Override
+        public long minSequence() {
+            return version.minSequence();
+        }
+
+        @Override
+        public long maxSequence() {
+            return version.maxSequence();
+        }
+
+        @Override
+        public int firstTradeAfter(@NonNull Instant instant) {
+            return version.firstTradeAfter(instant);
+        }
+
+        @Override
+        public TimelineVersion pinned() {
+            final TimelineVersion pinned = version.pinned();
+            return pinned == version ? this : new ResolvedVersion(pinned, stock);
+        }
+
+        @Override
+        public TradeAggregate aggregate(int from, long cut) {
+            return version.aggregate(from, cut);
+        }
+    }
+}
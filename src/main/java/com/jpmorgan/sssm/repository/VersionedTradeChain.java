@@ -0,0 +1,84 @@
+package com.jpmorgan.sssm.repository;
+
+import com.jpmorgan.sssm.model.MutableTrade;
+import com.jpmorgan.sssm.model.Trade;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copy-on-write storage for the trades of a single stock.
+ * <p>
+ * Implementations publish a new {@link TimelineVersion} for every recorded trade or batch of trades without modifying any
+ * previously published version, so that readers never need to lock.
+ *
+ * @author Anthony Accioly
+ */
+interface VersionedTradeChain {
+
+    /**
+     * Records a trade at its position in the timeline and publishes a new version.
+     *
+     * @param trade the trade to be recorded
+     * @param sequence the sequence number assigned to the trade
+     */
+    void insert(@NonNull Trade trade, long sequence);
+
+    /**
+     * Records the values of a reusable trade record at their position in the timeline and publishes a new version.
+     * <p>
+     * By default the record is materialized as a {@link Trade}.
+     *
+     * @param trade the values of the trade to be recorded, not to be kept after returning
+     * @param sequence the sequence number assigned to the trade
+     */
+    default void insert(@NonNull MutableTrade trade, long sequence) {
+        insert(trade.toTrade(), sequence);
+    }
+
+    /**
+     * Records a batch of trades at their positions in the timeline and publishes a single new version.
+     *
+     * @param trades the trades to be recorded
+     * @param firstSequence the sequence number assigned to the first trade, following trades get the next numbers
+     */
+    default void insertAll(@NonNull List<Trade> trades, long firstSequence) {
+        final long[] sequences = new long[trades.size()];
+        for (int index = 0; index < sequences.length; index++) {
+            sequences[index] = firstSequence + index;
+        }
+        insertAll(trades, sequences);
+    }
+
+    /**
+     * Records the values of a batch of reusable trade records at their positions in the timeline and publishes a single new
+     * version.
+     * <p>
+     * By default the records are materialized as {@link Trade}s.
+     *
+     * @param trades the values of the trades to be recorded, not to be kept after returning
+     * @param firstSequence the sequence number assigned to the first trade, following trades get the next numbers
+     */
+    default void insertRecords(@NonNull List<MutableTrade> trades, long firstSequence) {
+        final List<Trade> materialized = new ArrayList<>(trades.size());
+        for (MutableTrade trade : trades) {
+            materialized.add(trade.toTrade());
+        }
+        insertAll(materialized, firstSequence);
+    }
+
+    /**
+     * Records a batch of trades with arbitrary sequence numbers at their positions in the timeline and publishes a single new
+     * version. Trades are merged into the timeline in a single pass, rather than inserted one at a time.
+     *
+     * @param trades the trades to be recorded, in any order
+     * @param sequences the sequence number assigned to each trade
+     */
+    void insertAll(@NonNull List<Trade> trades, @NonNull long[] sequences);
+
+    /**
+     * @return the latest published version
+     */
+    TimelineVersion current();
+}
@@ -0,0 +1,37 @@
+package com.jpmorgan.sssm.service;
+
+import com.jpmorgan.sssm.model.Stock;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variant of {@link StockMarketService}.
+ * <p>
+ * Metrics are computed away from the caller's thread and delivered through {@link CompletableFuture}s.
+ *
+ * @author Anthony Accioly
+ */
+public interface AsyncStockMarketService {
+
+    /**
+     * Calculates volume weighted stock price based on trades in past 5 minutes.
+     *
+     * @param stock the stock traded in the stock market
+     *
+     * @return a future VWAP for the {@link Stock}
+     *
+     * @see StockMarketService#volumeWeightedStockPrice(Stock)
+     */
+    CompletableFuture<BigDecimal> volumeWeightedStockPrice(@NonNull Stock stock);
+
+    /**
+     * Calculates the GBCE All Share Index.
+     *
+     * @return a future All Share Index
+     *
+     * @see StockMarketService#allShareIndex()
+     */
+    CompletableFuture<BigDecimal> allShareIndex();
+}
@@ -0,0 +1,87 @@
+package com.jpmorgan.sssm.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.jpmorgan.sssm.model.Stock;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Reference Implementation for non-blocking Stock Market Services.
+ * <p>
+ * Computations are delegated to a {@link StockMarketService} running on a dedicated executor. Identical requests arriving
+ * while a computation is in flight share its result instead of triggering a new computation; once it completes the next
+ * request computes a fresh value.
+ *
+ * @author Anthony Accioly
+ */
+public final class AsyncStockMarketServiceImpl implements AsyncStockMarketService {
+
+    /**
+     * Key for in flight All Share Index computations
+     */
+    private static final Object ALL_SHARE_INDEX = new Object();
+
+    private final StockMarketService stockMarketService;
+    private final Executor executor;
+    private final Map<Object, CompletableFuture<BigDecimal>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a service backed by a pool of daemon threads, one per available processor.
+     *
+     * @param stockMarketService the synchronous service performing the computations
+     */
+    public AsyncStockMarketServiceImpl(@NonNull StockMarketService stockMarketService) {
+        this(stockMarketService, Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new ThreadFactoryBuilder().setNameFormat("stock-market-compute-%d").setDaemon(true).build()));
+    }
+
+    public AsyncStockMarketServiceImpl(@NonNull StockMarketService stockMarketService, @NonNull Executor executor) {
+        this.stockMarketService = stockMarketService;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<BigDecimal> volumeWeightedStockPrice(@NonNull Stock stock) {
+        return shared(stock, () -> stockMarketService.volumeWeightedStockPrice(stock));
+    }
+
+    @Override
+    public CompletableFuture<BigDecimal> allShareIndex() {
+        return shared(ALL_SHARE_INDEX, stockMarketService::allShareIndex);
+    }
+
+    private CompletableFuture<BigDecimal> shared(Object key, Supplier<BigDecimal> computation) {
+        final CompletableFuture<BigDecimal> created = new CompletableFuture<>();
+        final CompletableFuture<BigDecimal> existing = inFlight.putIfAbsent(key, created);
+
+        if (existing == null) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        final BigDecimal result = computation.get();
+                        inFlight.remove(key, created);
+                        created.complete(result);
+                    } catch (Throwable e) {
+                        inFlight.remove(key, created);
+                        created.completeExceptionally(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // e.g., executor rejected the task
+                inFlight.remove(key, created);
+                created.completeExceptionally(e);
+            }
+        }
+
+        // Dependent future, so that callers cancelling or completing their future don't interfere with each other
+        return (existing != null ? existing : created).thenApply(Function.identity());
+    }
+}
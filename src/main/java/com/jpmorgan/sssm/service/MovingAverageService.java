@@ -0,0 +1,33 @@
+package com.jpmorgan.sssm.service;
+
+import com.jpmorgan.sssm.model.Stock;
+import lombok.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Per stock exponentially weighted moving averages of price and volume.
+ * <p>
+ * Unlike the volume weighted stock price over a hard window, moving averages have no cut-off: old trades fade away instead
+ * of dropping out, so a large trade leaving the time period doesn't make the price jump.
+ *
+ * @author Anthony Accioly
+ */
+public interface MovingAverageService {
+
+    /**
+     * Returns the time it takes for the weight of a trade to halve.
+     *
+     * @return the half-life
+     */
+    Duration getHalfLife();
+
+    /**
+     * Returns the exponentially weighted moving averages of price and volume for a stock.
+     *
+     * @param stock the stock traded in the stock market
+     *
+     * @return moving averages of the {@link Stock}, decayed to the current time. Zero if no trades were recorded for the stock.
+     */
+    MovingAverages averages(@NonNull Stock stock);
+}
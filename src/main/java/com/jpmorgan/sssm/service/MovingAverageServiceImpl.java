@@ -0,0 +1,129 @@
+package com.jpmorgan.sssm.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.jpmorgan.sssm.math.FixedPointMath.CURRENCY_SCALE;
+import static com.jpmorgan.sssm.math.FixedPointMath.ROUNDING_MODE;
+
+/**
+ * Moving averages engine maintained incrementally as trades are recorded.
+ * <p>
+ * Register the engine as a listener of an {@link com.jpmorgan.sssm.repository.ObservableStockRepository} (or feed it trades
+ * directly). Each stock keeps two decayed sums, of {@code price * quantity} and of {@code quantity}, plus the time they were
+ * last decayed to: recording a trade and reading averages are O(1) and no trade is retained.
+ * <p>
+ * Trades are weighted by {@code e^(-lambda * age)}, with {@code lambda = ln(2) / half-life} and the age taken from trade
+ * timestamps, so that irregular arrivals decay by the actual time elapsed. Late trades are added with the weight of their
+ * age. The price is the ratio of the two sums, which doesn't change between trades; the volume is the decayed quantity sum
+ * times {@code lambda}, which converges to the traded shares per second for a steady flow of trades.
+ * <p>
+ * Sums are kept as {@code double}s: exponential weights are irrational anyway and prices are rounded to cents on read.
+ *
+ * @author Anthony Accioly
+ */
+public final class MovingAverageServiceImpl implements MovingAverageService, Consumer<Trade> {
+
+    public static final Duration DEFAULT_HALF_LIFE = Duration.ofMinutes(1);
+
+    private static final BigDecimal ZERO_PRICE = BigDecimal.valueOf(0, CURRENCY_SCALE);
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    @Getter private final Duration halfLife;
+    /**
+     * Decay rate per nanosecond
+     */
+    private final double lambda;
+    private final Clock clock;
+    private final Map<Stock, DecayedSums> sumsByStock = new ConcurrentHashMap<>();
+
+    public MovingAverageServiceImpl() {
+        this(DEFAULT_HALF_LIFE);
+    }
+
+    public MovingAverageServiceImpl(@NonNull Duration halfLife) {
+        this(halfLife, Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    MovingAverageServiceImpl(@NonNull Duration halfLife, @NonNull Clock clock) {
+        checkArgument(!halfLife.isNegative() && !halfLife.isZero(), "Half-life has to be positive");
+
+        this.halfLife = halfLife;
+        this.lambda = Math.log(2) / halfLife.toNanos();
+        this.clock = clock;
+    }
+
+    @Override
+    public void accept(@NonNull Trade trade) {
+        sumsByStock.computeIfAbsent(trade.getStock(), stock -> new DecayedSums()).add(trade, lambda);
+    }
+
+    @Override
+    public MovingAverages averages(@NonNull Stock stock) {
+        final DecayedSums sums = sumsByStock.get(stock);
+
+        return sums != null ? sums.averages(clock.instant(), lambda) : new MovingAverages(ZERO_PRICE, 0);
+    }
+
+    /**
+     * @return nanoseconds from {@code from} to {@code to}, negative if {@code to} is before {@code from}
+     */
+    private static double nanosBetween(Instant from, Instant to) {
+        return (to.getEpochSecond() - from.getEpochSecond()) * NANOS_PER_SECOND + (to.getNano() - from.getNano());
+    }
+
+    /**
+     * Exponentially decayed sums of a single stock.
+     */
+    private static final class DecayedSums {
+        private Instant decayedTo = null;
+        private double weightedPrice = 0;
+        private double volume = 0;
+
+        private synchronized void add(Trade trade, double lambda) {
+            final Instant timestamp = trade.getTimestamp();
+            double weight = 1;
+            if (decayedTo == null) {
+                decayedTo = timestamp;
+            } else {
+                final double elapsed = nanosBetween(decayedTo, timestamp);
+                if (elapsed >= 0) {
+                    final double decay = Math.exp(-lambda * elapsed);
+                    weightedPrice *= decay;
+                    volume *= decay;
+                    decayedTo = timestamp;
+                } else {
+                    // Late trade, already aged by the time the sums were decayed to
+                    weight = Math.exp(lambda * elapsed);
+                }
+            }
+
+            weightedPrice += weight * trade.getPrice().doubleValue() * trade.getQuantity();
+            volume += weight * trade.getQuantity();
+        }
+
+        private synchronized MovingAverages averages(Instant now, double lambda) {
+            if (volume == 0) {
+                // Only trades so late that their weight vanished
+                return new MovingAverages(ZERO_PRICE, 0);
+            }
+            final BigDecimal price = BigDecimal.valueOf(weightedPrice / volume).setScale(CURRENCY_SCALE, ROUNDING_MODE);
+            final double decay = Math.exp(-lambda * Math.max(0, nanosBetween(decayedTo, now)));
+
+            return new MovingAverages(price, volume * decay * lambda * NANOS_PER_SECOND);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.jpmorgan.sssm.service;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable exponentially weighted moving averages of a stock.
+ * <p>
+ * Values are zero if no trades were recorded for the stock.
+ *
+ * @author Anthony Accioly
+ */
+@Value
+public class MovingAverages {
+
+    /**
+     * Volume weighted price, where each trade weights half as much every half-life
+     */
+    @NonNull private final BigDecimal price;
+    /**
+     * Traded shares per second, where each trade weights half as much every half-life
+     */
+    private final double volumePerSecond;
+}
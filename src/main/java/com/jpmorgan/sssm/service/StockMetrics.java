@@ -0,0 +1,44 @@
+package com.jpmorgan.sssm.service;
+
+import com.jpmorgan.sssm.model.Stock;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Immutable screening metrics of a stock, based on its volume weighted stock price.
+ *
+ * @author Anthony Accioly
+ */
+@Value
+public class StockMetrics {
+
+    @NonNull private final Stock stock;
+    @NonNull private final BigDecimal volumeWeightedPrice;
+    private final BigDecimal dividendYield;
+    private final BigDecimal priceToEarningsRatio;
+
+    /**
+     * Returns the dividend yield of the stock at its volume weighted price.
+     *
+     * @return the dividend yield, empty if the stock wasn't traded over the VWAP time period.
+     *
+     * @see Stock#dividendYield(BigDecimal)
+     */
+    public Optional<BigDecimal> getDividendYield() {
+        return Optional.ofNullable(dividendYield);
+    }
+
+    /**
+     * Returns the P/E Ratio of the stock at its volume weighted price.
+     *
+     * @return the P/E ratio, empty if the stock wasn't traded over the VWAP time period or didn't pay dividends.
+     *
+     * @see Stock#priceToEarningsRatio(BigDecimal)
+     */
+    public Optional<BigDecimal> getPriceToEarningsRatio() {
+        return Optional.ofNullable(priceToEarningsRatio);
+    }
+}
@@ -0,0 +1,45 @@
+package com.jpmorgan.sssm.service;
+
+import com.google.common.collect.ImmutableMap;
+import com.jpmorgan.sssm.model.Stock;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Immutable table with the screening metrics of every traded stock at a point in time.
+ *
+ * @author Anthony Accioly
+ */
+@Value
+public class StockMetricsSnapshot {
+
+    @NonNull private final Instant instant;
+    /**
+     * Metrics keyed by the version of each stock they were computed with, i.e., its reference data at the time.
+     */
+    @NonNull private final ImmutableMap<Stock, StockMetrics> metricsByStock;
+
+    /**
+     * Returns the metrics of a stock.
+     *
+     * @param stock the stock traded in the stock market
+     *
+     * @return metrics for the {@link Stock}, empty if the stock was never traded.
+     */
+    public Optional<StockMetrics> metrics(@NonNull Stock stock) {
+        return Optional.ofNullable(metricsByStock.get(stock));
+    }
+
+    /**
+     * Returns the metrics of every traded stock.
+     *
+     * @return an immutable collection with metrics for each traded stock
+     */
+    public Collection<StockMetrics> allMetrics() {
+        return metricsByStock.values();
+    }
+}
@@ -0,0 +1,165 @@
+package com.jpmorgan.sssm.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import com.jpmorgan.sssm.repository.ObservableStockRepository;
+import com.jpmorgan.sssm.repository.StockHistory;
+import com.jpmorgan.sssm.repository.StockReference;
+import com.jpmorgan.sssm.repository.StockReferenceRepository;
+import com.jpmorgan.sssm.repository.StockReferenceRepositoryInMemoryImpl;
+import com.jpmorgan.sssm.repository.StockRepository;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static com.jpmorgan.sssm.math.FixedPointMath.MIN_VALUE;
+import static com.jpmorgan.sssm.service.StockMarketService.VWAP_TIME_PERIOD;
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * Lazily computed, cached table of dividend yield, P/E Ratio and volume weighted stock price for every traded stock.
+ * <p>
+ * Tables are created over an {@link ObservableStockRepository} and register themselves as its listener, so that they learn
+ * about every new trade. Metrics of a stock are only recomputed when a snapshot is requested and the stock either received new
+ * trades, had a trade leaving the VWAP time period or had its reference data updated since its metrics were computed. If
+ * nothing changed the previous snapshot is returned as is.
+ * <p>
+ * Stocks are resolved through the {@link StockReferenceRepository}: metrics, and the stocks keying them, always reflect the
+ * reference data current when they were computed, whichever version of the stock the trades hold.
+ *
+ * @author Anthony Accioly
+ */
+public final class StockMetricsTable implements Consumer<Trade> {
+
+    private final StockRepository stockRepository;
+    private final StockReferenceRepository stockReferenceRepository;
+    private final Clock clock;
+    private final Set<Stock> staleStocks = ConcurrentHashMap.newKeySet();
+    private final Map<Stock, CachedMetrics> metricsByStock = new HashMap<>();
+    private StockMetricsSnapshot snapshot = new StockMetricsSnapshot(Instant.MIN, ImmutableMap.of());
+
+    /**
+     * Creates a table listening to the trades recorded in a repository, with no reference data besides the traded stocks.
+     *
+     * @param stockRepository the repository trades are recorded into
+     *
+     * @return a table registered as a listener of the repository
+     */
+    public static StockMetricsTable create(@NonNull ObservableStockRepository stockRepository) {
+        return create(stockRepository, new StockReferenceRepositoryInMemoryImpl());
+    }
+
+    /**
+     * Creates a table listening to the trades recorded in a repository.
+     *
+     * @param stockRepository the repository trades are recorded into
+     * @param stockReferenceRepository the current dividends and par value of the stocks
+     *
+     * @return a table registered as a listener of the repository
+     */
+    public static StockMetricsTable create(@NonNull ObservableStockRepository stockRepository,
+                                           @NonNull StockReferenceRepository stockReferenceRepository) {
+        return create(stockRepository, stockReferenceRepository, Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    static StockMetricsTable create(@NonNull ObservableStockRepository stockRepository,
+                                    @NonNull StockReferenceRepository stockReferenceRepository, @NonNull Clock clock) {
+        final StockMetricsTable table = new StockMetricsTable(stockRepository, stockReferenceRepository, clock);
+        stockRepository.addListener(table);
+        return table;
+    }
+
+    private StockMetricsTable(StockRepository stockRepository, StockReferenceRepository stockReferenceRepository, Clock clock) {
+        this.stockRepository = stockRepository;
+        this.stockReferenceRepository = stockReferenceRepository;
+        this.clock = clock;
+    }
+
+    @Override
+    public void accept(@NonNull Trade trade) {
+        staleStocks.add(trade.getStock());
+    }
+
+    /**
+     * Returns the metrics of every traded stock, recomputing only the ones that changed.
+     *
+     * @return an immutable snapshot of the metrics table
+     */
+    public synchronized StockMetricsSnapshot snapshot() {
+        final Instant now = clock.instant();
+        // Drains the stale flags before reading trades: trades flagging a stock from now on are either part of the history
+        // or flag it again for the next snapshot
+        final Set<Stock> staleSinceLastSnapshot = new HashSet<>();
+        for (Iterator<Stock> iterator = staleStocks.iterator(); iterator.hasNext(); ) {
+            staleSinceLastSnapshot.add(iterator.next());
+            iterator.remove();
+        }
+        final StockHistory history = stockRepository.snapshot();
+        final Set<Stock> stocks = history.findAllStocks();
+
+        boolean changed = stocks.size() != snapshot.getMetricsByStock().size();
+        for (Stock stock : stocks) {
+            final CachedMetrics cached = metricsByStock.get(stock);
+            final Optional<StockReference> reference = stockReferenceRepository.findBySymbol(stock.getSymbol());
+            final long referenceVersion = reference.map(StockReference::getVersion).orElse(0L);
+            final boolean stale = staleSinceLastSnapshot.contains(stock);
+            if (cached == null || stale || !now.isBefore(cached.validUntil) || cached.referenceVersion != referenceVersion) {
+                final Stock current = reference.map(StockReference::getStock).orElse(stock);
+                metricsByStock.put(stock, compute(history, current, referenceVersion, now));
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            final ImmutableMap.Builder<Stock, StockMetrics> builder = ImmutableMap.builder();
+            for (Stock stock : stocks) {
+                // Keyed by the resolved stock, rather than the possibly stale version held by the trade history
+                final StockMetrics metrics = metricsByStock.get(stock).metrics;
+                builder.put(metrics.getStock(), metrics);
+            }
+            snapshot = new StockMetricsSnapshot(now, builder.build());
+        }
+        return snapshot;
+    }
+
+    private static CachedMetrics compute(StockHistory history, Stock stock, long referenceVersion, Instant now) {
+        final Instant cutTime = now.minus(VWAP_TIME_PERIOD);
+
+        // Running totals of read-optimized repositories answer without iterating the trades
+        final BigDecimal price = history.aggregateTradesByStockSinceInstant(stock, cutTime).volumeWeightedPrice();
+        final boolean priced = price.compareTo(MIN_VALUE) >= 0;
+        final BigDecimal dividendYield = priced ? stock.dividendYield(price) : null;
+        final BigDecimal priceToEarningsRatio = priced && stock.getLastDividend().compareTo(ZERO) > 0 ? stock.priceToEarningsRatio(price) : null;
+
+        // Metrics change when the oldest trade, i.e., the first one after the cut, leaves the time period
+        final Iterator<Trade> trades = history.findTradesByStockSinceInstant(stock, cutTime).iterator();
+        final Instant validUntil = trades.hasNext() ? trades.next().getTimestamp().plus(VWAP_TIME_PERIOD) : Instant.MAX;
+
+        return new CachedMetrics(new StockMetrics(stock, price, dividendYield, priceToEarningsRatio), validUntil, referenceVersion);
+    }
+
+    private static final class CachedMetrics {
+        private final StockMetrics metrics;
+        private final Instant validUntil;
+        private final long referenceVersion;
+
+        private CachedMetrics(StockMetrics metrics, Instant validUntil, long referenceVersion) {
+            this.metrics = metrics;
+            this.validUntil = validUntil;
+            this.referenceVersion = referenceVersion;
+        }
+    }
+}
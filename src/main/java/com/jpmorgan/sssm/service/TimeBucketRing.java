@@ -0,0 +1,125 @@
+package com.jpmorgan.sssm.service;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Fixed size ring of time buckets covering a rolling window.
+ * <p>
+ * The window is split in buckets of {@code resolution} length. Buckets are created on demand and evicted as the window
+ * slides, so that memory is bounded by the number of buckets regardless of how many values are recorded. The resolution of
+ * the window is the bucket length, i.e., the oldest bucket may start up to one {@code resolution} before the window.
+ * <p>
+ * Not thread safe, callers are expected to synchronize access.
+ *
+ * @param <B> type of the bucket state
+ *
+ * @author Anthony Accioly
+ */
+final class TimeBucketRing<B> {
+
+    private final long resolutionMillis;
+    private final Supplier<B> bucketFactory;
+    private final Object[] buckets;
+    private final long[] bucketIndexes;
+    private long latestIndex = Long.MIN_VALUE;
+
+    TimeBucketRing(@NonNull Duration window, @NonNull Duration resolution, @NonNull Supplier<B> bucketFactory) {
+        checkArgument(!resolution.isNegative() && !resolution.isZero(), "Resolution has to be positive");
+        checkArgument(window.compareTo(resolution) >= 0, "Window has to be equal or greater than the resolution");
+
+        this.resolutionMillis = resolution.toMillis();
+        this.bucketFactory = bucketFactory;
+
+        final int size = (int) ((window.toMillis() + resolutionMillis - 1) / resolutionMillis);
+        this.buckets = new Object[size];
+        this.bucketIndexes = new long[size];
+    }
+
+    /**
+     * Slides the window up to {@code now}, evicting every bucket that fell out of it.
+     *
+     * @param now the end of the window
+     * @param evicted callback for buckets leaving the window, called before they are discarded
+     */
+    void advance(@NonNull Instant now, @NonNull Consumer<B> evicted) {
+        final long nowIndex = indexOf(now);
+        if (nowIndex <= latestIndex) {
+            return;
+        }
+
+        if (latestIndex != Long.MIN_VALUE && nowIndex - latestIndex >= buckets.length) {
+            // The whole window expired
+            for (int slot = 0; slot < buckets.length; slot++) {
+                evict(slot, bucketIndexes[slot], evicted);
+            }
+        } else if (latestIndex != Long.MIN_VALUE) {
+            // Only buckets between the previous and the new window start expired
+            for (long index = latestIndex - buckets.length + 1; index <= nowIndex - buckets.length; index++) {
+                evict(slotOf(index), index, evicted);
+            }
+        }
+        latestIndex = nowIndex;
+    }
+
+    /**
+     * Returns the bucket holding values for a given {@code timestamp}, creating it if needed.
+     * <p>
+     * Timestamps after the end of the window are assigned to the latest bucket.
+     *
+     * @param timestamp the instant of the value to be recorded
+     *
+     * @return the bucket for {@code timestamp} or {@code null} if the timestamp is older than the window or the window has
+     * not been {@link #advance(Instant, Consumer) advanced} yet
+     */
+    @SuppressWarnings("unchecked")
+    B bucketFor(@NonNull Instant timestamp) {
+        final long index = Math.min(indexOf(timestamp), latestIndex);
+        if (latestIndex == Long.MIN_VALUE || index <= latestIndex - buckets.length) {
+            return null;
+        }
+
+        final int slot = slotOf(index);
+        if (buckets[slot] == null || bucketIndexes[slot] != index) {
+            buckets[slot] = bucketFactory.get();
+            bucketIndexes[slot] = index;
+        }
+        return (B) buckets[slot];
+    }
+
+    /**
+     * Performs an action for each bucket inside the window.
+     *
+     * @param action the action to be performed
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(@NonNull Consumer<B> action) {
+        for (int slot = 0; slot < buckets.length; slot++) {
+            if (buckets[slot] != null && bucketIndexes[slot] > latestIndex - buckets.length) {
+                action.accept((B) buckets[slot]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void evict(int slot, long index, Consumer<B> evicted) {
+        if (buckets[slot] != null && bucketIndexes[slot] == index) {
+            evicted.accept((B) buckets[slot]);
+            buckets[slot] = null;
+        }
+    }
+
+    private long indexOf(Instant instant) {
+        return Math.floorDiv(instant.toEpochMilli(), resolutionMillis);
+    }
+
+    private int slotOf(long index) {
+        return (int) Math.floorMod(index, (long) buckets.length);
+    }
+}
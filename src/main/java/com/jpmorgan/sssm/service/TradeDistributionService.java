@@ -0,0 +1,42 @@
+package com.jpmorgan.sssm.service;
+
+import com.jpmorgan.sssm.model.Stock;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * Per stock approximate distribution of trade prices and sizes over a rolling window.
+ *
+ * @author Anthony Accioly
+ */
+public interface TradeDistributionService {
+
+    /**
+     * Returns the length of the rolling window covered by the distributions.
+     *
+     * @return the rolling window
+     */
+    Duration getWindow();
+
+    /**
+     * Estimates a quantile of the trade prices of a stock over the rolling window (e.g., 0.5 for the median price).
+     *
+     * @param stock the stock traded in the stock market
+     * @param quantile the quantile, between 0 and 1
+     *
+     * @return the approximate price at the given quantile. 0.00 if no trades were recorded for the stock during that time.
+     */
+    BigDecimal priceQuantile(@NonNull Stock stock, double quantile);
+
+    /**
+     * Estimates a quantile of the trade sizes of a stock over the rolling window (e.g., 0.99 for the 99th percentile).
+     *
+     * @param stock the stock traded in the stock market
+     * @param quantile the quantile, between 0 and 1
+     *
+     * @return the approximate quantity at the given quantile. 0 if no trades were recorded for the stock during that time.
+     */
+    long quantityQuantile(@NonNull Stock stock, double quantile);
+}
@@ -0,0 +1,129 @@
+package com.jpmorgan.sssm.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.jpmorgan.sssm.math.QuantileSketch;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.jpmorgan.sssm.math.FixedPointMath.CURRENCY_SCALE;
+import static com.jpmorgan.sssm.math.FixedPointMath.ROUNDING_MODE;
+
+/**
+ * Trade distribution engine maintained incrementally as trades are recorded.
+ * <p>
+ * Register the engine as a listener of an {@link com.jpmorgan.sssm.repository.ObservableStockRepository} (or feed it trades
+ * directly). Each stock keeps a ring of time buckets, each one with a {@link QuantileSketch} for prices and another for
+ * quantities. Queries merge the sketches of the buckets inside the window, thus memory and query time are bounded
+ * regardless of the traded volume. Estimates are within 1% of the true values.
+ *
+ * @author Anthony Accioly
+ */
+public final class TradeDistributionServiceImpl implements TradeDistributionService, Consumer<Trade> {
+
+    /**
+     * Default length of the time buckets, i.e., the resolution of the rolling window
+     */
+    public static final Duration DEFAULT_RESOLUTION = Duration.ofSeconds(30);
+
+    private static final BigDecimal ZERO_PRICE = BigDecimal.valueOf(0, CURRENCY_SCALE);
+
+    @Getter private final Duration window;
+    private final Duration resolution;
+    private final Clock clock;
+    private final Map<Stock, RollingDistribution> distributionsByStock = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an engine with the same time horizon as the volume-weighted average price.
+     */
+    public TradeDistributionServiceImpl() {
+        this(StockMarketService.VWAP_TIME_PERIOD, DEFAULT_RESOLUTION);
+    }
+
+    public TradeDistributionServiceImpl(@NonNull Duration window, @NonNull Duration resolution) {
+        this(window, resolution, Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    TradeDistributionServiceImpl(@NonNull Duration window, @NonNull Duration resolution, @NonNull Clock clock) {
+        checkArgument(!resolution.isNegative() && !resolution.isZero(), "Resolution has to be positive");
+        checkArgument(window.compareTo(resolution) >= 0, "Window has to be equal or greater than the resolution");
+
+        this.window = window;
+        this.resolution = resolution;
+        this.clock = clock;
+    }
+
+    @Override
+    public void accept(@NonNull Trade trade) {
+        distributionsByStock.computeIfAbsent(trade.getStock(), stock -> new RollingDistribution(window, resolution))
+                .record(trade, clock.instant());
+    }
+
+    @Override
+    public BigDecimal priceQuantile(@NonNull Stock stock, double quantile) {
+        final QuantileSketch prices = merged(stock, true);
+
+        return prices.getCount() > 0 ? BigDecimal.valueOf(prices.quantile(quantile)).setScale(CURRENCY_SCALE, ROUNDING_MODE) : ZERO_PRICE;
+    }
+
+    @Override
+    public long quantityQuantile(@NonNull Stock stock, double quantile) {
+        final QuantileSketch quantities = merged(stock, false);
+
+        return quantities.getCount() > 0 ? Math.max(1, Math.round(quantities.quantile(quantile))) : 0;
+    }
+
+    private QuantileSketch merged(Stock stock, boolean prices) {
+        final RollingDistribution distribution = distributionsByStock.get(stock);
+
+        return distribution != null ? distribution.merge(clock.instant(), prices) : new QuantileSketch();
+    }
+
+    /**
+     * Sketches of the trades recorded in a time bucket.
+     */
+    private static final class Bucket {
+        private final QuantileSketch prices = new QuantileSketch();
+        private final QuantileSketch quantities = new QuantileSketch();
+    }
+
+    /**
+     * Rolling window distributions for a single stock.
+     */
+    private static final class RollingDistribution {
+        private final TimeBucketRing<Bucket> buckets;
+
+        private RollingDistribution(Duration window, Duration resolution) {
+            this.buckets = new TimeBucketRing<>(window, resolution, Bucket::new);
+        }
+
+        private synchronized void record(Trade trade, Instant now) {
+            buckets.advance(now, bucket -> { });
+
+            final Bucket bucket = buckets.bucketFor(trade.getTimestamp());
+            if (bucket != null) {
+                bucket.prices.accept(trade.getPrice().doubleValue());
+                bucket.quantities.accept(trade.getQuantity());
+            }
+        }
+
+        private synchronized QuantileSketch merge(Instant now, boolean prices) {
+            buckets.advance(now, bucket -> { });
+
+            final QuantileSketch merged = new QuantileSketch();
+            buckets.forEach(bucket -> merged.merge(prices ? bucket.prices : bucket.quantities));
+            return merged;
+        }
+    }
+}
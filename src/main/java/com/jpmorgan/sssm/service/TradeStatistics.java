@@ -0,0 +1,45 @@
+package com.jpmorgan.sssm.service;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+import static com.jpmorgan.sssm.math.FixedPointMath.MATH_CONTEXT;
+import static com.jpmorgan.sssm.math.FixedPointMath.PERCENTAGE_SCALE;
+import static com.jpmorgan.sssm.math.FixedPointMath.ROUNDING_MODE;
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * Immutable summary of the trades of a stock over a rolling window.
+ * <p>
+ * Prices are 0.00 if no trades were recorded for the stock during the window.
+ *
+ * @author Anthony Accioly
+ */
+@Value
+public class TradeStatistics {
+
+    private final long tradeCount;
+    private final long volume;
+    private final long buyVolume;
+    private final long sellVolume;
+    @NonNull private final BigDecimal turnover;
+    @NonNull private final BigDecimal minPrice;
+    @NonNull private final BigDecimal maxPrice;
+
+    /**
+     * Calculates the buy/sell volume imbalance, i.e., {@code (buyVolume - sellVolume) / volume}.
+     *
+     * @return a percentage between -1 (only sells) and 1 (only buys) with up to 5 decimal digits. 0 if there were no trades.
+     */
+    public BigDecimal buySellImbalance() {
+        if (volume == 0) {
+            return ZERO;
+        }
+        return BigDecimal.valueOf(buyVolume - sellVolume)
+                .divide(BigDecimal.valueOf(volume), MATH_CONTEXT)
+                .setScale(PERCENTAGE_SCALE, ROUNDING_MODE)
+                .stripTrailingZeros();
+    }
+}
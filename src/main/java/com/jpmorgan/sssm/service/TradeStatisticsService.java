@@ -0,0 +1,31 @@
+package com.jpmorgan.sssm.service;
+
+import com.jpmorgan.sssm.model.Stock;
+import lombok.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Per stock trade statistics over a rolling window.
+ *
+ * @author Anthony Accioly
+ */
+public interface TradeStatisticsService {
+
+    /**
+     * Returns the length of the rolling window covered by the statistics.
+     *
+     * @return the rolling window
+     */
+    Duration getWindow();
+
+    /**
+     * Returns volume, turnover, trade count, buy/sell imbalance and price range for a stock over the rolling window.
+     *
+     * @param stock the stock traded in the stock market
+     *
+     * @return statistics for the {@link Stock} over the rolling window. Counters are zero if no trades were recorded for the
+     * stock during that time.
+     */
+    TradeStatistics statistics(@NonNull Stock stock);
+}
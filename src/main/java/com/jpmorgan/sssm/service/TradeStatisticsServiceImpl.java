@@ -0,0 +1,167 @@
+package com.jpmorgan.sssm.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.jpmorgan.sssm.math.FixedPointMath.CURRENCY_SCALE;
+import static com.jpmorgan.sssm.model.TradeIndicator.BUY;
+
+/**
+ * Trade statistics engine maintained incrementally as trades are recorded.
+ * <p>
+ * Register the engine as a listener of an {@link com.jpmorgan.sssm.repository.ObservableStockRepository} (or feed it trades
+ * directly). Each stock keeps a ring of time buckets plus running totals for the whole window: recording a trade and
+ * reading statistics never scan the trade history. Totals are adjusted as buckets leave the window, and the price range is
+ * only recomputed, from the buckets, after a bucket holding trades expires.
+ *
+ * @author Anthony Accioly
+ */
+public final class TradeStatisticsServiceImpl implements TradeStatisticsService, Consumer<Trade> {
+
+    /**
+     * Default length of the time buckets, i.e., the resolution of the rolling window
+     */
+    public static final Duration DEFAULT_RESOLUTION = Duration.ofSeconds(1);
+
+    private static final BigDecimal ZERO_PRICE = BigDecimal.valueOf(0, CURRENCY_SCALE);
+
+    @Getter private final Duration window;
+    private final Duration resolution;
+    private final Clock clock;
+    private final Map<Stock, RollingStatistics> statisticsByStock = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an engine with the same time horizon as the volume-weighted average price.
+     */
+    public TradeStatisticsServiceImpl() {
+        this(StockMarketService.VWAP_TIME_PERIOD, DEFAULT_RESOLUTION);
+    }
+
+    public TradeStatisticsServiceImpl(@NonNull Duration window, @NonNull Duration resolution) {
+        this(window, resolution, Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    TradeStatisticsServiceImpl(@NonNull Duration window, @NonNull Duration resolution, @NonNull Clock clock) {
+        checkArgument(!resolution.isNegative() && !resolution.isZero(), "Resolution has to be positive");
+        checkArgument(window.compareTo(resolution) >= 0, "Window has to be equal or greater than the resolution");
+
+        this.window = window;
+        this.resolution = resolution;
+        this.clock = clock;
+    }
+
+    @Override
+    public void accept(@NonNull Trade trade) {
+        statisticsByStock.computeIfAbsent(trade.getStock(), stock -> new RollingStatistics(window, resolution))
+                .record(trade, clock.instant());
+    }
+
+    @Override
+    public TradeStatistics statistics(@NonNull Stock stock) {
+        final RollingStatistics statistics = statisticsByStock.get(stock);
+
+        return statistics != null ? statistics.snapshot(clock.instant())
+                : new TradeStatistics(0, 0, 0, 0, ZERO_PRICE, ZERO_PRICE, ZERO_PRICE);
+    }
+
+    /**
+     * Totals of the trades recorded in a time bucket.
+     */
+    private static final class Bucket {
+        private long tradeCount = 0;
+        private long volume = 0;
+        private long buyVolume = 0;
+        private BigDecimal turnover = ZERO_PRICE;
+        private BigDecimal minPrice = null;
+        private BigDecimal maxPrice = null;
+
+        private void add(Trade trade) {
+            tradeCount++;
+            volume += trade.getQuantity();
+            if (trade.getIndicator() == BUY) {
+                buyVolume += trade.getQuantity();
+            }
+            turnover = turnover.add(trade.getPrice().multiply(BigDecimal.valueOf(trade.getQuantity())));
+            minPrice = minPrice == null ? trade.getPrice() : minPrice.min(trade.getPrice());
+            maxPrice = maxPrice == null ? trade.getPrice() : maxPrice.max(trade.getPrice());
+        }
+    }
+
+    /**
+     * Rolling window statistics for a single stock.
+     */
+    private static final class RollingStatistics {
+        private final TimeBucketRing<Bucket> buckets;
+        private final Bucket totals = new Bucket();
+        private boolean priceRangeStale = false;
+
+        private RollingStatistics(Duration window, Duration resolution) {
+            this.buckets = new TimeBucketRing<>(window, resolution, Bucket::new);
+        }
+
+        private synchronized void record(Trade trade, Instant now) {
+            buckets.advance(now, this::evict);
+
+            final Bucket bucket = buckets.bucketFor(trade.getTimestamp());
+            if (bucket == null) {
+                // Too old to be part of the window
+                return;
+            }
+
+            bucket.add(trade);
+            final BigDecimal minPrice = totals.minPrice;
+            final BigDecimal maxPrice = totals.maxPrice;
+            totals.add(trade);
+            if (priceRangeStale) {
+                // Will be recomputed from the buckets on next read
+                totals.minPrice = minPrice;
+                totals.maxPrice = maxPrice;
+            }
+        }
+
+        private synchronized TradeStatistics snapshot(Instant now) {
+            buckets.advance(now, this::evict);
+
+            if (priceRangeStale) {
+                totals.minPrice = null;
+                totals.maxPrice = null;
+                buckets.forEach(bucket -> {
+                    if (bucket.tradeCount > 0) {
+                        totals.minPrice = totals.minPrice == null ? bucket.minPrice : totals.minPrice.min(bucket.minPrice);
+                        totals.maxPrice = totals.maxPrice == null ? bucket.maxPrice : totals.maxPrice.max(bucket.maxPrice);
+                    }
+                });
+                priceRangeStale = false;
+            }
+
+            return new TradeStatistics(totals.tradeCount, totals.volume, totals.buyVolume, totals.volume - totals.buyVolume,
+                    totals.turnover,
+                    totals.minPrice != null ? totals.minPrice : ZERO_PRICE,
+                    totals.maxPrice != null ? totals.maxPrice : ZERO_PRICE);
+        }
+
+        private void evict(Bucket bucket) {
+            if (bucket.tradeCount == 0) {
+                return;
+            }
+            totals.tradeCount -= bucket.tradeCount;
+            totals.volume -= bucket.volume;
+            totals.buyVolume -= bucket.buyVolume;
+            totals.turnover = totals.turnover.subtract(bucket.turnover);
+            priceRangeStale = true;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.jpmorgan.sssm.feed;
+
+import com.google.common.collect.ImmutableList;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import com.jpmorgan.sssm.model.TradeIndicator;
+import com.jpmorgan.sssm.repository.StockRepository;
+import com.jpmorgan.sssm.repository.StockRepositoryOffHeapImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import static com.jpmorgan.sssm.model.Trade.createOrder;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Anthony Accioly
+ */
+public class TradeFileLoaderTest {
+
+    private final Stock tea = Stock.createCommonStock("TEA", BigDecimal.ZERO, new BigDecimal("100"));
+    private final Stock gin = Stock.createPreferredStock("GIN", new BigDecimal("8"), new BigDecimal("100"), new BigDecimal("0.02"));
+    private final List<Stock> stocks = ImmutableList.of(tea, gin);
+
+    private StockRepository stockRepository;
+    private Path file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        stockRepository = StockRepositoryOffHeapImpl.create();
+        file = Files.createTempFile("trades", ".csv");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testCanLoadTrades() throws IOException {
+        write("# symbol,epoch milliseconds,quantity,indicator,price",
+                "TEA,1462874400000,100,BUY,10.50",
+                "GIN,1462874400001,20,S,7",
+                "",
+                "TEA,1462874399000,5,SELL,0.015\r");
+
+        final long loaded = new TradeFileLoader(stockRepository, stocks).load(file);
+
+        assertThat(loaded).isEqualTo(3);
+        assertThat(stockRepository.findTradesByStock(tea)).containsExactly(
+                createOrder(tea, Instant.ofEpochMilli(1462874399000L), 5, TradeIndicator.SELL, new BigDecimal("0.02")),
+                createOrder(tea, Instant.ofEpochMilli(1462874400000L), 100, TradeIndicator.BUY, new BigDecimal("10.50")));
+        assertThat(stockRepository.findTradesByStock(gin)).containsExactly(
+                createOrder(gin, Instant.ofEpochMilli(1462874400001L), 20, TradeIndicator.SELL, new BigDecimal("7.00")));
+    }
+
+    @Test
+    public void testRoundsPricesHalfEven() throws IOException {
+        write("TEA,1,1,B,1.005", "TEA,2,1,B,1.015", "TEA,3,1,B,1.0051", "TEA,4,1,B,.5", "TEA,5,1,B,2.");
+
+        new TradeFileLoader(stockRepository, stocks).load(file);
+
+        assertThat(stockRepository.findTradesByStock(tea)).extracting(Trade::getPrice).containsExactly(
+                new BigDecimal("1.00"), new BigDecimal("1.02"), new BigDecimal("1.01"), new BigDecimal("0.50"), new BigDecimal("2.00"));
+    }
+
+    @Test
+    public void testCanLoadLinesAcrossWindowsInBatches() throws IOException {
+        write("TEA,1,1,B,1.00", "GIN,2,2,S,2.00", "TEA,3,3,B,3.00", "GIN,4,4,S,4.00", "TEA,5,5,B,5.00");
+
+        final long loaded = new TradeFileLoader(stockRepository, stocks, ',', 2, 20).load(file);
+
+        assertThat(loaded).isEqualTo(5);
+        assertThat(stockRepository.findTradesByStock(tea)).extracting(Trade::getQuantity).containsExactly(1, 3, 5);
+        assertThat(stockRepository.findTradesByStock(gin)).extracting(Trade::getQuantity).containsExactly(2, 4);
+    }
+
+    @Test
+    public void testCanLoadOtherDelimiters() throws IOException {
+        write("TEA|1|1|B|1.00");
+
+        assertThat(new TradeFileLoader(stockRepository, stocks, '|', 10).load(file)).isEqualTo(1);
+    }
+
+    @Test
+    public void testCanNotLoadLinesLongerThanAWindow() throws IOException {
+        write("TEA,1462874400000,100,BUY,10.50");
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new TradeFileLoader(stockRepository, stocks, ',', 2, 10).load(file))
+                .withMessage("Line 1 is longer than 10 bytes");
+    }
+
+    @Test
+    public void testCanNotLoadUnknownSymbols() throws IOException {
+        write("TEA,1,1,B,1.00", "RUM,1,1,B,1.00");
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new TradeFileLoader(stockRepository, stocks).load(file))
+                .withMessage("Unknown symbol at line 2");
+    }
+
+    @Test
+    public void testCanNotLoadMalformedLines() throws IOException {
+        assertMalformed("TEA,1,1,B", "Missing price at line 1");
+        assertMalformed("TEA,1,1,HOLD,1.00", "Malformed indicator at line 1");
+        assertMalformed("TEA,1,1,BU,1.00", "Malformed indicator at line 1");
+        assertMalformed("TEA,1,3000000000,B,1.00", "Malformed quantity at line 1");
+        assertMalformed("TEA,-1,1,B,1.00", "Malformed timestamp at line 1");
+        assertMalformed("TEA,1,1,B,1.0.0", "Malformed price at line 1");
+        assertMalformed("TEA,1,1,B,.", "Malformed price at line 1");
+        assertMalformed("TEA,1,0,B,1.00", "Invalid trade at line 1");
+    }
+
+    @Test
+    public void testCanNotCreateLoaderWithDuplicatedSymbols() {
+        final Collection<Stock> duplicated = ImmutableList.of(tea, Stock.createCommonStock("TEA", BigDecimal.ONE, BigDecimal.TEN));
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new TradeFileLoader(stockRepository, duplicated))
+                .withMessage("Duplicated symbol: TEA");
+    }
+
+    private void assertMalformed(String line, String message) throws IOException {
+        write(line);
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new TradeFileLoader(stockRepository, stocks).load(file))
+                .withMessage(message);
+    }
+
+    private void write(String... lines) throws IOException {
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,93 @@
+package com.jpmorgan.sssm.load;
+
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.repository.StockRepository;
+import com.jpmorgan.sssm.repository.StockRepositoryOffHeapImpl;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Anthony Accioly
+ */
+public class LoadGeneratorTest {
+
+    @Test
+    public void testCanRunShortLoad() throws Exception {
+        final LoadProfile profile = LoadProfile.builder()
+                .symbols(20)
+                .tradesPerSecond(2_000)
+                .queriesPerSecond(100)
+                .indexQueryShare(0.5)
+                .duration(Duration.ofMillis(500))
+                .build();
+        final StockRepository stockRepository = StockRepositoryOffHeapImpl.create();
+
+        final LoadReport report = new LoadGenerator(profile, stockRepository).run();
+
+        assertThat(report.getRecordLatency().getCount()).isPositive();
+        assertThat(stockRepository.findAllStocks().stream().mapToLong(stock -> stockRepository.findTradesByStock(stock).size()).sum())
+                .isEqualTo(report.getRecordLatency().getCount());
+        assertThat(report.getVolumeWeightedPriceLatency().getCount()).isPositive();
+        assertThat(report.getAllShareIndexLatency().getCount()).isPositive();
+        assertThat(report.getRecordLatency().getP99()).isGreaterThanOrEqualTo(report.getRecordLatency().getP50());
+        assertThat(report.tradeThroughput()).isPositive();
+        assertThat(report.getGarbageCollectionTime().isNegative()).isFalse();
+        assertThat(report.toString()).contains("Trades:", "All Share Index latency:", "GC:");
+    }
+
+    @Test
+    public void testCreatesCommonAndPreferredStocks() {
+        final LoadProfile profile = LoadProfile.builder().symbols(200).preferredShare(0.5).build();
+
+        final LoadGenerator loadGenerator = new LoadGenerator(profile, StockRepositoryOffHeapImpl.create());
+
+        assertThat(loadGenerator.getStocks()).hasSize(200).doesNotHaveDuplicates();
+        assertThat(loadGenerator.getStocks()).extracting(stock -> stock.getClass().getSimpleName())
+                .contains("CommonStock", "PreferredStock");
+    }
+
+    @Test
+    public void testHotSymbolsDominateSkewedUniverse() {
+        final SymbolUniverse universe = new SymbolUniverse(LoadProfile.builder().symbols(100).skew(1.1).build());
+        final SplittableRandom random = new SplittableRandom(7);
+
+        final int[] picks = new int[100];
+        for (int i = 0; i < 100_000; i++) {
+            picks[universe.pickRank(random)]++;
+        }
+
+        int topTen = 0;
+        for (int rank = 0; rank < 10; rank++) {
+            topTen += picks[rank];
+        }
+        assertThat(topTen).as("Ten hottest symbols get most trades").isGreaterThan(50_000);
+        assertThat(picks[0]).isGreaterThan(picks[1]).isGreaterThan(picks[99]);
+    }
+
+    @Test
+    public void testUnskewedUniverseIsUniform() {
+        final SymbolUniverse universe = new SymbolUniverse(LoadProfile.builder().symbols(4).skew(0).build());
+        final SplittableRandom random = new SplittableRandom(7);
+
+        final int[] picks = new int[4];
+        for (int i = 0; i < 40_000; i++) {
+            picks[universe.pickRank(random)]++;
+        }
+
+        for (int count : picks) {
+            assertThat(count).isBetween(9_000, 11_000);
+        }
+    }
+
+    @Test
+    public void testCanNotRunQueriesWithoutReaders() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> LoadProfile.builder().readerThreads(0).queriesPerSecond(10).build())
+                .withMessage("Queries need at least one reader");
+    }
+}
@@ -0,0 +1,101 @@
+package com.jpmorgan.sssm.math;
+
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static com.jpmorgan.sssm.math.FixedPointMath.CURRENCY_SCALE;
+import static com.jpmorgan.sssm.math.FixedPointMath.MATH_CONTEXT;
+import static com.jpmorgan.sssm.math.FixedPointMath.PERCENTAGE_SCALE;
+import static com.jpmorgan.sssm.math.FixedPointMath.ROUNDING_MODE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author Anthony Accioly
+ */
+public class TieredMathTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testDivisionIsIdenticalToExactDivision() {
+        for (int i = 0; i < 100_000; i++) {
+            final BigDecimal dividend = BigDecimal.valueOf(random.nextInt(100_000), random.nextInt(8));
+            final BigDecimal divisor = BigDecimal.valueOf(1 + random.nextInt(10_000_000), CURRENCY_SCALE);
+
+            assertThat(TieredMath.divide(dividend, divisor, PERCENTAGE_SCALE)).isEqualTo(exactDivision(dividend, divisor));
+        }
+    }
+
+    @Test
+    public void testDivisionFallsBackOnRoundingBoundaries() {
+        assertThat(TieredMath.divide(BigDecimal.ONE, new BigDecimal("8"), CURRENCY_SCALE)).isEqualTo(new BigDecimal("0.12"));
+        assertThat(TieredMath.divide(new BigDecimal("3"), new BigDecimal("8"), CURRENCY_SCALE)).isEqualTo(new BigDecimal("0.38"));
+        assertThat(TieredMath.round(0.125, 0, CURRENCY_SCALE)).isNull();
+    }
+
+    @Test
+    public void testDivisionOfValuesBeyondDoubleRange() {
+        final BigDecimal[] values = {new BigDecimal("1e-320"), new BigDecimal("3e-320"), new BigDecimal("7e400"), BigDecimal.ZERO};
+        for (BigDecimal dividend : values) {
+            for (BigDecimal divisor : values) {
+                if (divisor.signum() != 0) {
+                    assertThat(TieredMath.divide(dividend, divisor, PERCENTAGE_SCALE)).isEqualTo(exactDivision(dividend, divisor));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDivisionByZeroFails() {
+        assertThatExceptionOfType(ArithmeticException.class).isThrownBy(() -> TieredMath.divide(BigDecimal.ONE, BigDecimal.ZERO, 2));
+    }
+
+    @Test
+    public void testLogarithmOfValuesBeyondDoubleRange() {
+        assertThat(TieredMath.ln(new BigDecimal("1e400"))).isCloseTo(400 * Math.log(10), within(1e-12));
+        assertThat(TieredMath.ln(new BigDecimal("2.5e-400"))).isCloseTo(Math.log(2.5) - 400 * Math.log(10), within(1e-12));
+        assertThat(TieredMath.ln(BigDecimal.ZERO)).isEqualTo(Double.NEGATIVE_INFINITY);
+    }
+
+    @Test
+    public void testGeometricMeanIsIdenticalToExactRoot() {
+        for (int i = 0; i < 200; i++) {
+            final BigDecimalSummaryGeometricMean summary = new BigDecimalSummaryGeometricMean();
+            final int count = 1 + random.nextInt(10);
+            for (int value = 0; value < count; value++) {
+                summary.accept(BigDecimal.valueOf(1 + random.nextInt(10_000_000), CURRENCY_SCALE));
+            }
+
+            assertThat(summary.geometricMean(CURRENCY_SCALE)).isEqualTo(summary.geometricMean().setScale(CURRENCY_SCALE, ROUNDING_MODE));
+        }
+    }
+
+    @Test
+    public void testGeometricMeanFallsBackOnRoundingBoundaries() {
+        final BigDecimalSummaryGeometricMean summary = new BigDecimalSummaryGeometricMean();
+        summary.accept(new BigDecimal("1.125"));
+        final BigDecimalSummaryGeometricMean other = new BigDecimalSummaryGeometricMean();
+        other.accept(new BigDecimal("1.125"));
+        summary.combine(other);
+
+        assertThat(summary.geometricMean(CURRENCY_SCALE)).isEqualTo(new BigDecimal("1.12"));
+    }
+
+    @Test
+    public void testGeometricMeanWithZeroValues() {
+        final BigDecimalSummaryGeometricMean summary = new BigDecimalSummaryGeometricMean();
+        assertThat(summary.geometricMean(CURRENCY_SCALE)).isEqualTo(new BigDecimal("0.00"));
+
+        summary.accept(new BigDecimal("10"));
+        summary.accept(BigDecimal.ZERO);
+        assertThat(summary.geometricMean(CURRENCY_SCALE)).isEqualTo(new BigDecimal("0.00"));
+    }
+
+    private static BigDecimal exactDivision(BigDecimal dividend, BigDecimal divisor) {
+        return dividend.divide(divisor, MATH_CONTEXT).setScale(PERCENTAGE_SCALE, ROUNDING_MODE);
+    }
+}
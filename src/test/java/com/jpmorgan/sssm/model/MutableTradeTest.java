@@ -0,0 +1,74 @@
+package com.jpmorgan.sssm.model;
+
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static com.jpmorgan.sssm.model.Stock.createCommonStock;
+import static com.jpmorgan.sssm.model.Trade.createOrder;
+import static com.jpmorgan.sssm.model.TradeIndicator.BUY;
+import static com.jpmorgan.sssm.model.TradeIndicator.SELL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Anthony Accioly
+ */
+public class MutableTradeTest {
+
+    private final Stock stock = createCommonStock("STOC", new BigDecimal("10"), new BigDecimal("100"));
+
+    @Test
+    public void testMaterializesEqualTrade() {
+        final Instant timestamp = Instant.parse("2016-05-10T10:00:00.123456789Z");
+
+        final Trade trade = new MutableTrade().set(stock, timestamp.getEpochSecond(), timestamp.getNano(), 10, SELL, 102050).toTrade();
+
+        assertThat(trade).isEqualTo(createOrder(stock, timestamp, 10, SELL, new BigDecimal("1020.50")));
+    }
+
+    @Test
+    public void testCanBeSetFromEpochMilliseconds() {
+        final MutableTrade trade = new MutableTrade().set(stock, -1, 1, BUY, 1);
+
+        assertThat(trade.getEpochSecond()).isEqualTo(-1);
+        assertThat(trade.getNanos()).isEqualTo(999_000_000);
+        assertThat(trade.toTrade().getTimestamp()).isEqualTo(Instant.ofEpochMilli(-1));
+    }
+
+    @Test
+    public void testCanBeReused() {
+        final MutableTrade trade = new MutableTrade();
+
+        final Trade first = trade.set(stock, 1_000, 1, BUY, 100).toTrade();
+        final Trade second = trade.set(stock, 2_000, 2, SELL, 200).toTrade();
+
+        assertThat(first).isEqualTo(createOrder(stock, Instant.ofEpochSecond(1), 1, BUY, new BigDecimal("1.00")));
+        assertThat(second).isEqualTo(createOrder(stock, Instant.ofEpochSecond(2), 2, SELL, new BigDecimal("2.00")));
+    }
+
+    @Test
+    public void testValidatesLikeTrades() {
+        final MutableTrade trade = new MutableTrade().set(stock, 1_000, 1, BUY, 100);
+
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> trade.set(stock, 2_000, 0, BUY, 100))
+                .withMessage("Quantity has to be equal or greater than 1");
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> trade.set(stock, 2_000, 1, BUY, 0))
+                .withMessage("Price has to be equal or greater than 0.01");
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> trade.set(stock, 2, 1_000_000_000, 1, BUY, 100))
+                .withMessage("Nanos have to be within a second");
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> trade.set(stock, Long.MAX_VALUE, 0, 1, BUY, 100))
+                .withMessage("Timestamp is out of the supported range");
+        assertThatExceptionOfType(NullPointerException.class).isThrownBy(() -> trade.set(stock, 2_000, 1, null, 100));
+
+        // Failed updates leave the record untouched
+        assertThat(trade.toTrade()).isEqualTo(createOrder(stock, Instant.ofEpochSecond(1), 1, BUY, new BigDecimal("1.00")));
+    }
+
+    @Test
+    public void testCanNotMaterializeEmptyRecord() {
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> new MutableTrade().toTrade())
+                .withMessage("Trade record is empty");
+    }
+}
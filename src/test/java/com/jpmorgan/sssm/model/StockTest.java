@@ -37,6 +37,20 @@ public class StockTest {
                 .as("Fixed Dividend is 0.02").hasFieldOrPropertyWithValue("fixedDividend", new BigDecimal("0.02"));
     }
 
+    @Test
+    public void testStocksAreIdentifiedBySymbol() {
+        final Stock stock = createCommonStock("COMM", new BigDecimal("10"), new BigDecimal("100"));
+        final Stock newDividend = createCommonStock("COMM", new BigDecimal("12"), new BigDecimal("100"));
+        final Stock preferredStock = createPreferredStock("PREF", new BigDecimal("8"), new BigDecimal("100"), new BigDecimal("0.02"));
+        final Stock newFixedDividend = createPreferredStock("PREF", new BigDecimal("8"), new BigDecimal("100"), new BigDecimal("0.03"));
+
+        assertThat(newDividend).isEqualTo(stock);
+        assertThat(newDividend.hashCode()).isEqualTo(stock.hashCode());
+        assertThat(newFixedDividend).isEqualTo(preferredStock);
+        assertThat(newFixedDividend.hashCode()).isEqualTo(preferredStock.hashCode());
+        assertThat(createCommonStock("OTHR", new BigDecimal("10"), new BigDecimal("100"))).isNotEqualTo(stock);
+    }
+
     @Test
     public void testCanCreateStockWithZeroDividend() {
         final Stock zeroDividendStock = createCommonStock("ZERO", BigDecimal.ZERO, new BigDecimal("100"));
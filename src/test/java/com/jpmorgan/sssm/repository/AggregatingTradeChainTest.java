@@ -0,0 +1,181 @@
+package com.jpmorgan.sssm.repository;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.jpmorgan.sssm.model.MutableTrade;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.jpmorgan.sssm.model.Stock.createCommonStock;
+import static com.jpmorgan.sssm.model.Trade.createOrder;
+import static com.jpmorgan.sssm.model.TradeIndicator.BUY;
+import static com.jpmorgan.sssm.model.TradeIndicator.SELL;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Anthony Accioly
+ */
+public class AggregatingTradeChainTest {
+
+    private final Stock stock = createCommonStock("AGGR", new BigDecimal("2"), new BigDecimal("80"));
+    private final Instant start = Instant.parse("2016-05-10T10:00:00Z");
+
+    @Test
+    public void testAggregatesMatchTheSumOfTheTrades() {
+        final AggregatingTradeChain chain = new AggregatingTradeChain(new InMemoryTradeChain(stock), false);
+        final SplittableRandom random = new SplittableRandom(7);
+        final MutableTrade mutableTrade = new MutableTrade();
+        long sequence = 0;
+        for (int i = 0; i < 3 * InMemoryTradeChain.CHUNK_SIZE; i++) {
+            // Mostly in order, with late trades, batches and reusable records
+            final long second = random.nextInt(10) == 0 ? random.nextLong(i + 1) : i;
+            final int quantity = random.nextInt(1, 1000);
+            final long priceInCents = random.nextLong(1, 100_000);
+            switch (random.nextInt(4)) {
+                case 0:
+                    chain.insert(trade(second, quantity, priceInCents), ++sequence);
+                    break;
+                case 1:
+                    chain.insert(mutableTrade.set(stock, start.getEpochSecond() + second, 0, quantity, BUY, priceInCents), ++sequence);
+                    break;
+                case 2:
+                    chain.insertAll(Arrays.asList(trade(second, quantity, priceInCents), trade(second / 2, 1, 1)), sequence + 1);
+                    sequence += 2;
+                    break;
+                default:
+                    chain.insertRecords(Arrays.asList(
+                            new MutableTrade().set(stock, start.getEpochSecond() + second, 0, quantity, SELL, priceInCents),
+                            new MutableTrade().set(stock, start.getEpochSecond() + second, 1, 1, BUY, 1)), sequence + 1);
+                    sequence += 2;
+            }
+        }
+
+        final TimelineVersion version = chain.current();
+        assertThat(chain.isAggregating()).isTrue();
+        for (int from = 0; from <= version.size(); from += 97) {
+            assertThat(version.aggregate(from, Long.MAX_VALUE)).isEqualTo(TradeAggregate.of(StockHistorySnapshot.view(version, from, Long.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    public void testAggregatesLeaveOutTradesAfterTheCut() {
+        final AggregatingTradeChain chain = new AggregatingTradeChain(new InMemoryTradeChain(stock), false);
+        chain.insert(trade(1, 10, 1000), 1);
+        chain.insert(trade(2, 30, 2000), 2);
+        chain.insert(trade(0, 60, 500), 3);
+
+        assertThat(chain.current().aggregate(0, 2)).isEqualTo(new TradeAggregate(40, new BigDecimal("700.00")));
+        assertThat(chain.current().aggregate(0, 3)).isEqualTo(new TradeAggregate(100, new BigDecimal("1000.00")));
+        assertThat(chain.current().aggregate(0, 3).volumeWeightedPrice()).isEqualTo(new BigDecimal("10.00"));
+        assertThat(chain.current().aggregate(3, 3)).isEqualTo(TradeAggregate.EMPTY);
+    }
+
+    @Test
+    public void testAdaptiveChainsAggregateWhileReadOften() {
+        final AggregatingTradeChain chain = new AggregatingTradeChain(new InMemoryTradeChain(stock), true);
+        final List<Trade> trades = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            trades.add(trade(i, i + 1, 100 + i));
+        }
+        chain.insertAll(trades, 1);
+        assertThat(chain.isAggregating()).isFalse();
+
+        // Read heavy
+        for (int i = 0; i < AggregatingTradeChain.DECISION_PERIOD; i++) {
+            chain.current().aggregate(50, Long.MAX_VALUE);
+        }
+        assertThat(chain.isAggregating()).isTrue();
+        assertThat(chain.current().aggregate(50, Long.MAX_VALUE)).isEqualTo(TradeAggregate.of(trades.subList(50, 100)));
+
+        // Write heavy
+        for (int i = 0; i < AggregatingTradeChain.DECISION_PERIOD; i++) {
+            chain.insert(trade(100 + i, 1, 100), 101 + i);
+        }
+        assertThat(chain.isAggregating()).isFalse();
+    }
+
+    @Test
+    public void testReadersDecideWithoutWaitingForWriters() throws Exception {
+        final CountDownLatch inserting = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final InMemoryTradeChain delegate = new InMemoryTradeChain(stock);
+        final AggregatingTradeChain chain = new AggregatingTradeChain(new VersionedTradeChain() {
+            @Override
+            public void insert(Trade trade, long sequence) {
+                // Holds the lock of the chain until released
+                inserting.countDown();
+                Uninterruptibles.awaitUninterruptibly(release);
+                delegate.insert(trade, sequence);
+            }
+
+            @Override
+            public void insertAll(List<Trade> trades, long[] sequences) {
+                delegate.insertAll(trades, sequences);
+            }
+
+            @Override
+            public TimelineVersion current() {
+                return delegate.current();
+            }
+        }, true);
+        final List<Trade> trades = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            trades.add(trade(i, i + 1, 100 + i));
+        }
+        chain.insertAll(trades, 1);
+
+        final ExecutorService writer = Executors.newSingleThreadExecutor();
+        final ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            final Future<?> insert = writer.submit(() -> chain.insert(trade(100, 1, 100), 101));
+            assertThat(inserting.await(30, TimeUnit.SECONDS)).isTrue();
+            reader.submit(() -> {
+                for (int i = 0; i < AggregatingTradeChain.DECISION_PERIOD; i++) {
+                    chain.current().aggregate(50, Long.MAX_VALUE);
+                }
+            }).get(5, TimeUnit.SECONDS);
+            assertThat(chain.isAggregating()).isTrue();
+
+            release.countDown();
+            insert.get(30, TimeUnit.SECONDS);
+            trades.add(trade(100, 1, 100));
+            assertThat(chain.isAggregating()).as("The decision of the reader stands").isTrue();
+            assertThat(chain.current().aggregate(50, Long.MAX_VALUE)).isEqualTo(TradeAggregate.of(trades.subList(50, 101)));
+        } finally {
+            release.countDown();
+            writer.shutdownNow();
+            reader.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRepositoriesCanBeCreatedInEveryMode() {
+        for (RepositoryMode mode : RepositoryMode.values()) {
+            for (StockRepository repository : Arrays.asList(StockRepositoryInMemoryImpl.create(mode), StockRepositoryOffHeapImpl.create(mode))) {
+                repository.record(trade(1, 10, 1000));
+                repository.record(createOrder(stock, start.plusSeconds(2), 30, SELL, new BigDecimal("20.00")));
+
+                assertThat(repository.aggregateTradesByStockSinceInstant(stock, start))
+                        .as("%s", mode).isEqualTo(new TradeAggregate(40, new BigDecimal("700.00")));
+                assertThat(repository.snapshot().aggregateTradesByStockSinceInstant(stock, start.plusSeconds(1)))
+                        .as("%s", mode).isEqualTo(new TradeAggregate(30, new BigDecimal("600.00")));
+            }
+        }
+    }
+
+    private Trade trade(long second, int quantity, long priceInCents) {
+        return createOrder(stock, start.plusSeconds(second), quantity, BUY, BigDecimal.valueOf(priceInCents, 2));
+    }
+}
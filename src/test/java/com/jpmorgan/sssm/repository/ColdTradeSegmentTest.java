@@ -0,0 +1,123 @@
+package com.jpmorgan.sssm.repository;
+
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static com.jpmorgan.sssm.model.Stock.createCommonStock;
+import static com.jpmorgan.sssm.model.Trade.createOrder;
+import static com.jpmorgan.sssm.model.TradeIndicator.BUY;
+import static com.jpmorgan.sssm.model.TradeIndicator.SELL;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Anthony Accioly
+ */
+public class ColdTradeSegmentTest {
+
+    private final Stock stock = createCommonStock("COLD", new BigDecimal("2"), new BigDecimal("80"));
+
+    @Test
+    public void testDecodesTheEncodedTrades() {
+        final SplittableRandom random = new SplittableRandom(42);
+        final Trade[] trades = new Trade[InMemoryTradeChain.CHUNK_SIZE];
+        final long[] sequences = new long[trades.length];
+        Instant timestamp = Instant.parse("2016-05-10T10:00:00.123456789Z");
+        for (int i = 0; i < trades.length; i++) {
+            // Irregular intervals, repeated timestamps and sequence numbers out of order (late trades)
+            timestamp = timestamp.plusNanos(random.nextInt(3) == 0 ? 0 : random.nextLong(1, 10_000_000_000L));
+            trades[i] = createOrder(stock, timestamp, random.nextInt(1, Integer.MAX_VALUE), random.nextBoolean() ? BUY : SELL,
+                    BigDecimal.valueOf(random.nextLong(1, Long.MAX_VALUE), 2));
+            sequences[i] = random.nextLong(1, Long.MAX_VALUE);
+        }
+
+        final ColdTradeSegment segment = ColdTradeSegment.seal(stock, trades, sequences, trades.length);
+
+        assertThat(segment).isNotNull();
+        assertThat(segment.size()).isEqualTo(trades.length);
+        assertThat(segment.lastTimestamp()).isEqualTo(timestamp);
+        for (int i = 0; i < trades.length; i++) {
+            assertThat(segment.get(i)).isEqualTo(trades[i]);
+            assertThat(segment.sequenceAt(i)).isEqualTo(sequences[i]);
+        }
+    }
+
+    @Test
+    public void testEncodesSteadyTradesCompactly() {
+        final Trade[] trades = new Trade[InMemoryTradeChain.CHUNK_SIZE];
+        final long[] sequences = new long[trades.length];
+        final Instant start = Instant.parse("2016-05-10T10:00:00Z");
+        for (int i = 0; i < trades.length; i++) {
+            trades[i] = createOrder(stock, start.plusMillis(250L * i), 100 + i % 10, i % 3 == 0 ? SELL : BUY,
+                    new BigDecimal("120.00").add(BigDecimal.valueOf(i % 7, 2)));
+            sequences[i] = 1_000_000 + 2 * i;
+        }
+
+        final ColdTradeSegment segment = ColdTradeSegment.seal(stock, trades, sequences, trades.length);
+
+        // Delta-of-delta timestamps, quantity, price delta and sequence delta take a byte each
+        assertThat(segment.encodedSize()).isLessThan(5 * trades.length + 16);
+        assertThat(segment.get(trades.length - 1)).isEqualTo(trades[trades.length - 1]);
+    }
+
+    @Test
+    public void testCanNotSealTimestampsBeyondNanosecondRange() {
+        final Trade[] trades = {createOrder(stock, Instant.MAX, 1, BUY, new BigDecimal("10.00"))};
+
+        assertThat(ColdTradeSegment.seal(stock, trades, new long[]{1}, 1)).isNull();
+    }
+
+    @Test
+    public void testChainSealsChunksOlderThanTheColdThreshold() {
+        final InMemoryTradeChain chain = new InMemoryTradeChain(stock);
+        final List<Trade> trades = new ArrayList<>();
+        final Instant start = Instant.parse("2016-05-10T08:00:00Z");
+        for (int i = 0; i < 3 * InMemoryTradeChain.CHUNK_SIZE; i++) {
+            final Trade trade = createOrder(stock, start.plusSeconds(2 * i), 1 + i % 500, i % 2 == 0 ? BUY : SELL,
+                    new BigDecimal("10.00").add(BigDecimal.valueOf(i % 50, 2)));
+            trades.add(trade);
+            chain.insert(trade, i + 1);
+        }
+
+        assertThat(chain.coldSize()).isPositive();
+        assertThat(StockHistorySnapshot.view(chain.current(), 0, Long.MAX_VALUE)).containsExactlyElementsOf(trades);
+        assertThat(chain.current().firstTradeAfter(start.plusSeconds(199))).isEqualTo(100);
+
+        // A late trade in the sealed chunks
+        final Trade late = createOrder(stock, start.plusSeconds(1), 7, SELL, new BigDecimal("9.99"));
+        trades.add(1, late);
+        chain.insert(late, 3 * InMemoryTradeChain.CHUNK_SIZE + 1);
+
+        assertThat(StockHistorySnapshot.view(chain.current(), 0, Long.MAX_VALUE)).containsExactlyElementsOf(trades);
+        assertThat(StockHistorySnapshot.view(chain.current(), 0, 3 * InMemoryTradeChain.CHUNK_SIZE)).doesNotContain(late);
+    }
+
+    @Test
+    public void testIteratorsDecodeEachSegmentOnce() {
+        final InMemoryTradeChain chain = new InMemoryTradeChain(stock);
+        final List<Trade> trades = new ArrayList<>();
+        final Instant start = Instant.parse("2016-05-10T08:00:00Z");
+        for (int i = 0; i < 3 * InMemoryTradeChain.CHUNK_SIZE; i++) {
+            final Trade trade = createOrder(stock, start.plusSeconds(2 * i), 1 + i % 500, BUY, new BigDecimal("10.00"));
+            trades.add(trade);
+            chain.insert(trade, i + 1);
+        }
+        final ColdTradeSegment segment = chain.coldSegment(0);
+        assertThat(segment).isNotNull();
+
+        final Iterator<Trade> iterator = StockHistorySnapshot.view(chain.current(), 0, Long.MAX_VALUE).iterator();
+        for (int i = 0; i < InMemoryTradeChain.CHUNK_SIZE; i++) {
+            // As if the garbage collector cleared the cache before every trade
+            segment.evict();
+            assertThat(iterator.next()).isEqualTo(trades.get(i));
+            assertThat(segment.isCached()).as("Decoded again at %d", i).isEqualTo(i == 0);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.jpmorgan.sssm.repository;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.jpmorgan.sssm.model.MutableTrade;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import com.jpmorgan.sssm.model.TradeIndicator;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.jpmorgan.sssm.model.Stock.createCommonStock;
+import static com.jpmorgan.sssm.model.Trade.createOrder;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Anthony Accioly
+ */
+public class HotStockTradeChainTest {
+
+    private final Stock stock = createCommonStock("HOT", new BigDecimal("2"), new BigDecimal("80"));
+    private final Instant start = Instant.parse("2016-05-10T10:00:00Z");
+
+    @Test
+    public void testMergesBufferedTradesInTimestampOrder() {
+        final HotStockTradeChain chain = new HotStockTradeChain(new InMemoryTradeChain(stock));
+        chain.insert(trade(10), 1);
+        chain.insert(trade(30), 2);
+        chain.split();
+        chain.insert(trade(20), 3);
+        chain.insert(trade(30), 4);
+        chain.insert(trade(5), 5);
+
+        final TimelineVersion version = chain.current();
+
+        assertThat(chain.isHot()).isTrue();
+        assertThat(StockHistorySnapshot.view(version, 0, Long.MAX_VALUE)).extracting(Trade::getTimestamp)
+                .containsExactly(start.plusMillis(5), start.plusMillis(10), start.plusMillis(20), start.plusMillis(30), start.plusMillis(30));
+        assertThat(version.sequenceAt(0)).isEqualTo(5);
+        assertThat(version.sequenceAt(3)).isEqualTo(2);
+        assertThat(version.sequenceAt(4)).isEqualTo(4);
+        assertThat(version.minSequence()).isEqualTo(1);
+        assertThat(version.maxSequence()).isEqualTo(5);
+        assertThat(version.firstTradeAfter(start.plusMillis(20))).isEqualTo(3);
+        assertThat(version.firstTradeAfter(start.plusMillis(30))).isEqualTo(5);
+        assertThat(StockHistorySnapshot.view(version, 0, 3)).extracting(Trade::getTimestamp)
+                .containsExactly(start.plusMillis(10), start.plusMillis(20), start.plusMillis(30));
+    }
+
+    @Test
+    public void testNeitherLosesNorDuplicatesTradesWhileDraining() throws Exception {
+        final HotStockTradeChain chain = new HotStockTradeChain(new InMemoryTradeChain(stock));
+        chain.split();
+        final int threads = 4;
+        final int tradesPerThread = 3 * HotStockTradeChain.STRIPE_SIZE + 17;
+        final AtomicLong sequence = new AtomicLong();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> writers = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                final SplittableRandom random = new SplittableRandom(thread);
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < tradesPerThread; i++) {
+                        chain.insert(trade(random.nextInt(10_000)), sequence.incrementAndGet());
+                        final TimelineVersion version = chain.current();
+                        assertThat(new ArrayList<>(StockHistorySnapshot.view(version, 0, Long.MAX_VALUE)))
+                                .isSortedAccordingTo(TradeTimeline.TIMESTAMP_ORDER);
+                        assertThat(distinctSequences(version)).isEqualTo(version.size());
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final TimelineVersion version = chain.current();
+        assertThat(version.size()).isEqualTo(threads * tradesPerThread);
+        assertThat(distinctSequences(version)).isEqualTo(threads * tradesPerThread);
+        assertThat(version.maxSequence()).isEqualTo(threads * tradesPerThread);
+    }
+
+    @Test
+    public void testSplitsWhenWritersWaitForEachOther() throws Exception {
+        // Holds the lock long enough for other writers to queue behind it
+        final InMemoryTradeChain delegate = new InMemoryTradeChain(stock);
+        final HotStockTradeChain chain = new HotStockTradeChain(new VersionedTradeChain() {
+            @Override
+            public void insert(Trade trade, long sequence) {
+                LockSupport.parkNanos(20_000);
+                delegate.insert(trade, sequence);
+            }
+
+            @Override
+            public void insertAll(List<Trade> trades, long[] sequences) {
+                delegate.insertAll(trades, sequences);
+            }
+
+            @Override
+            public TimelineVersion current() {
+                return delegate.current();
+            }
+        });
+        final AtomicLong sequence = new AtomicLong();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> writers = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < HotStockTradeChain.CONTENTION_PERIOD && !chain.isHot(); i++) {
+                        chain.insert(trade(i), sequence.incrementAndGet());
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(chain.isHot()).isTrue();
+        assertThat(chain.current().size()).isEqualTo((int) sequence.get());
+    }
+
+    @Test
+    public void testStaysColdWithoutContention() {
+        final HotStockTradeChain chain = new HotStockTradeChain(new InMemoryTradeChain(stock));
+        for (int i = 0; i < 2 * HotStockTradeChain.CONTENTION_PERIOD; i++) {
+            chain.insert(trade(i), i + 1);
+        }
+
+        assertThat(chain.isHot()).isFalse();
+    }
+
+    @Test
+    public void testForwardsMutableTradesOfColdStocks() {
+        final RecordingChain delegate = new RecordingChain(new InMemoryTradeChain(stock));
+        final HotStockTradeChain chain = new HotStockTradeChain(delegate);
+
+        chain.insert(new MutableTrade().set(stock, start.toEpochMilli(), 1, TradeIndicator.BUY, 1000), 1);
+
+        assertThat(delegate.recordInserts).isEqualTo(1);
+        assertThat(delegate.tradeInserts).isZero();
+        assertThat(chain.current().size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDrainsStripesWithASingleMerge() {
+        final RecordingChain delegate = new RecordingChain(new InMemoryTradeChain(stock));
+        final HotStockTradeChain chain = new HotStockTradeChain(delegate);
+        chain.insert(trade(HotStockTradeChain.STRIPE_SIZE), 1);
+        chain.split();
+
+        for (int i = 0; i < HotStockTradeChain.STRIPE_SIZE; i++) {
+            // Every other trade is late
+            chain.insert(trade(i % 2 == 0 ? i : 2 * HotStockTradeChain.STRIPE_SIZE - i), i + 2);
+        }
+
+        assertThat(delegate.batches).isEqualTo(1);
+        assertThat(delegate.tradeInserts).isEqualTo(1);
+        assertThat(new ArrayList<>(StockHistorySnapshot.view(delegate.current(), 0, Long.MAX_VALUE)))
+                .hasSize(HotStockTradeChain.STRIPE_SIZE + 1).isSortedAccordingTo(TradeTimeline.TIMESTAMP_ORDER);
+    }
+
+    @Test
+    public void testCoolsDownWithASingleWriter() {
+        final InMemoryTradeChain delegate = new InMemoryTradeChain(stock);
+        final HotStockTradeChain chain = new HotStockTradeChain(delegate);
+        chain.split();
+        final int trades = HotStockTradeChain.DRAINS_TO_COOL * HotStockTradeChain.STRIPE_SIZE;
+
+        for (int i = 0; i < trades; i++) {
+            chain.insert(trade(i), i + 1);
+        }
+        chain.insert(trade(trades), trades + 1);
+
+        assertThat(chain.isHot()).isFalse();
+        assertThat(delegate.current().size()).isEqualTo(trades + 1);
+        assertThat(chain.current()).isSameAs(delegate.current());
+    }
+
+    @Test
+    public void testWritersDrainIdleStripes() throws Exception {
+        final InMemoryTradeChain delegate = new InMemoryTradeChain(stock);
+        final HotStockTradeChain chain = new HotStockTradeChain(delegate);
+        chain.split();
+        chain.insert(trade(20), 1);
+        chain.insert(trade(10), 2);
+        final int idleStripe = HotStockTradeChain.stripeOf(Thread.currentThread().getId());
+        Thread writer;
+        do {
+            writer = new Thread(() -> chain.insert(trade(30), 3));
+        } while (HotStockTradeChain.stripeOf(writer.getId()) == idleStripe);
+
+        TimeUnit.NANOSECONDS.sleep(2 * HotStockTradeChain.IDLE_FLUSH_NANOS);
+        assertThat(chain.current().size()).isEqualTo(2);
+        assertThat(delegate.current().size()).as("Reads don't drain").isZero();
+        writer.start();
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+
+        assertThat(chain.current().size()).isEqualTo(3);
+        assertThat(delegate.current().size()).as("Drained by the other writer").isEqualTo(2);
+    }
+
+    @Test
+    public void testReadsDoNotWaitForDrainingWriters() throws Exception {
+        final CountDownLatch draining = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final InMemoryTradeChain delegate = new InMemoryTradeChain(stock);
+        final HotStockTradeChain chain = new HotStockTradeChain(new VersionedTradeChain() {
+            @Override
+            public void insert(Trade trade, long sequence) {
+                delegate.insert(trade, sequence);
+            }
+
+            @Override
+            public void insertAll(List<Trade> trades, long[] sequences) {
+                // Holds the stripe and the lock of the chain until released
+                draining.countDown();
+                Uninterruptibles.awaitUninterruptibly(release);
+                delegate.insertAll(trades, sequences);
+            }
+
+            @Override
+            public TimelineVersion current() {
+                return delegate.current();
+            }
+        });
+        chain.split();
+
+        final ExecutorService writer = Executors.newSingleThreadExecutor();
+        final ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            writer.submit(() -> {
+                for (int i = 0; i < HotStockTradeChain.STRIPE_SIZE - 1; i++) {
+                    chain.insert(trade(i), i + 1);
+                }
+            }).get(30, TimeUnit.SECONDS);
+            assertThat(chain.current().size()).isEqualTo(HotStockTradeChain.STRIPE_SIZE - 1);
+            TimeUnit.NANOSECONDS.sleep(2 * HotStockTradeChain.IDLE_FLUSH_NANOS);
+
+            final Future<?> drain = writer.submit(() -> chain.insert(trade(HotStockTradeChain.STRIPE_SIZE), HotStockTradeChain.STRIPE_SIZE));
+            assertThat(draining.await(30, TimeUnit.SECONDS)).isTrue();
+            assertThat(reader.submit(() -> chain.current().size()).get(5, TimeUnit.SECONDS))
+                    .isEqualTo(HotStockTradeChain.STRIPE_SIZE - 1);
+
+            release.countDown();
+            drain.get(30, TimeUnit.SECONDS);
+            assertThat(chain.current().size()).isEqualTo(HotStockTradeChain.STRIPE_SIZE);
+        } finally {
+            release.countDown();
+            writer.shutdownNow();
+            reader.shutdownNow();
+        }
+    }
+
+    private static long distinctSequences(TimelineVersion version) {
+        final List<Long> sequences = new ArrayList<>();
+        for (int index = 0; index < version.size(); index++) {
+            sequences.add(version.sequenceAt(index));
+        }
+        return sequences.stream().distinct().count();
+    }
+
+    private Trade trade(long millis) {
+        return createOrder(stock, start.plusMillis(millis), 1, TradeIndicator.BUY, new BigDecimal("10.00"));
+    }
+
+    /**
+     * Counts the calls made to the underlying chain.
+     */
+    private static final class RecordingChain implements VersionedTradeChain {
+        private final VersionedTradeChain delegate;
+        private int tradeInserts;
+        private int recordInserts;
+        private int batches;
+
+        private RecordingChain(VersionedTradeChain delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void insert(Trade trade, long sequence) {
+            tradeInserts++;
+            delegate.insert(trade, sequence);
+        }
+
+        @Override
+        public void insert(MutableTrade trade, long sequence) {
+            recordInserts++;
+            delegate.insert(trade, sequence);
+        }
+
+        @Override
+        public void insertAll(List<Trade> trades, long[] sequences) {
+            batches++;
+            delegate.insertAll(trades, sequences);
+        }
+
+        @Override
+        public TimelineVersion current() {
+            return delegate.current();
+        }
+    }
+}
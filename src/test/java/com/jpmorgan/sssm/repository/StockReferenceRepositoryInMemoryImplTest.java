@@ -0,0 +1,64 @@
+package com.jpmorgan.sssm.repository;
+
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+
+import static com.jpmorgan.sssm.model.Stock.createCommonStock;
+import static com.jpmorgan.sssm.model.Trade.buyNow;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Anthony Accioly
+ */
+public class StockReferenceRepositoryInMemoryImplTest {
+
+    private StockReferenceRepository referenceRepository;
+
+    @BeforeMethod
+    public void setUp() {
+        referenceRepository = new StockReferenceRepositoryInMemoryImpl();
+    }
+
+    @Test
+    public void testEveryUpdateCreatesANewVersion() {
+        final Stock stock = createCommonStock("DIV", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock newDividend = createCommonStock("DIV", new BigDecimal("3"), new BigDecimal("80"));
+
+        assertThat(referenceRepository.update(stock).getVersion()).isEqualTo(1);
+        assertThat(referenceRepository.update(newDividend).getVersion()).isEqualTo(2);
+        assertThat(referenceRepository.findBySymbol("DIV").get().getStock().getLastDividend()).isEqualTo(new BigDecimal("3.00"));
+    }
+
+    @Test
+    public void testResolvesStocksToTheirCurrentVersion() {
+        final Stock stock = createCommonStock("DIV", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock unknownStock = createCommonStock("UNKN", new BigDecimal("2"), new BigDecimal("80"));
+        referenceRepository.update(createCommonStock("DIV", new BigDecimal("3"), new BigDecimal("80")));
+
+        assertThat(referenceRepository.resolve(stock).getLastDividend()).isEqualTo(new BigDecimal("3.00"));
+        assertThat(referenceRepository.resolve(unknownStock)).isSameAs(unknownStock);
+        assertThat(referenceRepository.findBySymbol("UNKN")).isEmpty();
+    }
+
+    @Test
+    public void testDividendUpdatesKeepTheTradeHistory() {
+        final StockRepository stockRepository = StockRepositoryOffHeapImpl.create();
+        final Stock stock = createCommonStock("DIV", new BigDecimal("2"), new BigDecimal("80"));
+        final Trade trade = buyNow(stock, 10, new BigDecimal("10.00"));
+        stockRepository.record(trade);
+
+        final Stock newDividend = referenceRepository.update(createCommonStock("DIV", new BigDecimal("3"), new BigDecimal("80"))).getStock();
+
+        assertThat(stockRepository.findTradesByStock(newDividend)).containsExactly(trade);
+    }
+
+    @Test
+    public void testCanNotUpdateNullStock() {
+        assertThatExceptionOfType(NullPointerException.class).isThrownBy(() -> referenceRepository.update(null));
+    }
+}
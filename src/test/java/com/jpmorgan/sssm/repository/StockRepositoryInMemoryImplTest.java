@@ -9,8 +9,16 @@ import org.testng.annotations.Test;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.jpmorgan.sssm.model.Stock.createCommonStock;
 import static com.jpmorgan.sssm.model.Trade.buyNow;
@@ -56,6 +64,44 @@ public class StockRepositoryInMemoryImplTest {
         assertThat(repository.findTradesByStock(stock)).hasSize(1).contains(trade);
     }
 
+    @Test
+    public void testKeepsTheFirstRecordedVersionOfEachStock() {
+        final StockRepository repository = StockRepositoryInMemoryImpl.getInstance();
+        final Stock stock = createCommonStock("STCK", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock newDividend = createCommonStock("STCK", new BigDecimal("3"), new BigDecimal("80"));
+
+        repository.record(buyNow(stock, 10, new BigDecimal("1000.50")));
+        repository.record(sellNow(newDividend, 10, new BigDecimal("1000.50")));
+
+        assertThat(repository.findAllStocks()).extracting(Stock::getLastDividend).containsExactly(new BigDecimal("2.00"));
+        assertThat(repository.findTradesByStock(stock)).extracting(trade -> trade.getStock().getLastDividend())
+                .containsExactly(new BigDecimal("2.00"), new BigDecimal("3.00"));
+    }
+
+    @Test
+    public void testResolvesStocksToTheirPublishedVersion() {
+        final StockReferenceRepository referenceRepository = new StockReferenceRepositoryInMemoryImpl();
+        final Stock stock = createCommonStock("STCK", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock newDividend = createCommonStock("STCK", new BigDecimal("3"), new BigDecimal("80"));
+        for (RepositoryMode mode : RepositoryMode.values()) {
+            final StockRepository repository = StockRepositoryInMemoryImpl.create(mode, referenceRepository);
+            final Instant start = Instant.now().minus(Duration.ofMinutes(1));
+            repository.record(createOrder(stock, start, 10, TradeIndicator.BUY, new BigDecimal("1000.50")));
+            referenceRepository.update(newDividend);
+
+            assertThat(repository.findAllStocks()).as("%s", mode).extracting(Stock::getLastDividend)
+                    .containsExactly(new BigDecimal("3.00"));
+            assertThat(repository.findTradesByStock(stock)).as("%s", mode).extracting(trade -> trade.getStock().getLastDividend())
+                    .containsExactly(new BigDecimal("3.00"));
+            assertThat(repository.findTradesSinceInstant(start.minusSeconds(1)).map(trade -> trade.getStock().getLastDividend()))
+                    .as("%s", mode).containsExactly(new BigDecimal("3.00"));
+            assertThat(repository.snapshot().findTradesByStockSinceInstant(stock, start.minusSeconds(1))).as("%s", mode)
+                    .extracting(trade -> trade.getStock().getLastDividend()).containsExactly(new BigDecimal("3.00"));
+            assertThat(repository.aggregateTradesByStockSinceInstant(stock, start.minusSeconds(1))).as("%s", mode)
+                    .isEqualTo(new TradeAggregate(10, new BigDecimal("10005.00")));
+        }
+    }
+
     @Test
     public void testCanRecordTradeForMultipleStocks() {
         final StockRepository repository = StockRepositoryInMemoryImpl.getInstance();
@@ -78,7 +124,7 @@ public class StockRepositoryInMemoryImplTest {
     public void testCanNotRecordNullTrade() {
         final StockRepository repository = StockRepositoryInMemoryImpl.getInstance();
 
-        assertThatExceptionOfType(NullPointerException.class).isThrownBy(() -> repository.record(null));
+        assertThatExceptionOfType(NullPointerException.class).isThrownBy(() -> repository.record((Trade) null));
     }
 
     @Test
@@ -109,6 +155,123 @@ public class StockRepositoryInMemoryImplTest {
 
     }
 
+    @Test
+    public void testCanRecordBatchesOfTrades() {
+        final StockRepository repository = StockRepositoryInMemoryImpl.getInstance();
+        final Stock firstStock = createCommonStock("STK1", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock secondStock = createCommonStock("STK2", new BigDecimal("6"), new BigDecimal("120"));
+        final Instant now = Instant.now();
+        final Trade first = createOrder(firstStock, now.minusSeconds(30), 1, TradeIndicator.BUY, new BigDecimal("10.00"));
+        final Trade second = createOrder(secondStock, now.minusSeconds(20), 2, TradeIndicator.SELL, new BigDecimal("11.00"));
+        final Trade third = createOrder(firstStock, now.minusSeconds(10), 3, TradeIndicator.BUY, new BigDecimal("12.00"));
+        final Trade late = createOrder(firstStock, now.minusSeconds(40), 4, TradeIndicator.SELL, new BigDecimal("13.00"));
+        repository.record(first);
+
+        repository.recordAll(Arrays.asList(second, third, late));
+
+        assertThat(repository.findTradesByStock(firstStock)).containsExactly(late, first, third);
+        assertThat(repository.findTradesByStock(secondStock)).containsExactly(second);
+        assertThat(repository.snapshot().findTradesSinceInstant(now.minus(Duration.ofMinutes(5))).collect(Collectors.toList()))
+                .containsExactly(late, first, second, third);
+    }
+
+    @Test
+    public void testKeepsTradesInTimestampOrder() {
+        final StockRepository repository = StockRepositoryInMemoryImpl.getInstance();
+        final Stock stock = createCommonStock("LATE", new BigDecimal("2"), new BigDecimal("80"));
+        final Instant now = Instant.now();
+        final Trade first = createOrder(stock, now.minusSeconds(30), 1, TradeIndicator.BUY, new BigDecimal("10.00"));
+        final Trade second = createOrder(stock, now.minusSeconds(20), 2, TradeIndicator.SELL, new BigDecimal("11.00"));
+        final Trade third = createOrder(stock, now.minusSeconds(10), 3, TradeIndicator.BUY, new BigDecimal("12.00"));
+
+        repository.record(third);
+        repository.record(first);
+        repository.record(second);
+
+        assertThat(repository.findTradesByStock(stock)).containsExactly(first, second, third);
+        assertThat(repository.findTradesByStockSinceInstant(stock, now.minusSeconds(25))).containsExactly(second, third);
+    }
+
+    @Test
+    public void testSnapshotsIgnoreTradesRecordedAfterThem() {
+        final StockRepository repository = StockRepositoryInMemoryImpl.getInstance();
+        final Stock firstStock = createCommonStock("STK1", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock secondStock = createCommonStock("STK2", new BigDecimal("6"), new BigDecimal("120"));
+        final Instant now = Instant.now();
+        final Trade trade = createOrder(firstStock, now.minusSeconds(10), 1, TradeIndicator.BUY, new BigDecimal("10.00"));
+        repository.record(trade);
+
+        final StockHistory snapshot = repository.snapshot();
+        repository.record(createOrder(firstStock, now.minusSeconds(20), 2, TradeIndicator.SELL, new BigDecimal("11.00")));
+        repository.record(createOrder(secondStock, now.minusSeconds(5), 3, TradeIndicator.BUY, new BigDecimal("12.00")));
+
+        assertThat(snapshot.findAllStocks()).containsExactly(firstStock);
+        assertThat(snapshot.findTradesByStock(firstStock)).containsExactly(trade);
+        assertThat(snapshot.findTradesSinceInstant(now.minus(Duration.ofMinutes(5))).collect(Collectors.toList())).containsExactly(trade);
+        assertThat(repository.findTradesByStock(firstStock)).hasSize(2);
+    }
+
+    @Test
+    public void testKeepsTradesInTimestampOrderWhileRecordingConcurrently() throws Exception {
+        final StockRepository repository = StockRepositoryInMemoryImpl.getInstance();
+        final Stock stock = createCommonStock("BUSY", new BigDecimal("2"), new BigDecimal("80"));
+        final Instant now = Instant.now();
+        final int threads = 4;
+        // Enough trades to span several chunks, with late trades landing in older chunks
+        final int tradesPerThread = InMemoryTradeChain.CHUNK_SIZE;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> writers = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                final int offset = thread;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < tradesPerThread; i++) {
+                        final Instant timestamp = now.minusMillis((long) (i * threads + offset) * 7919 % (threads * tradesPerThread));
+                        repository.record(createOrder(stock, timestamp, 1, TradeIndicator.BUY, new BigDecimal("10.00")));
+                        assertThat(new ArrayList<>(repository.snapshot().findTradesByStock(stock))).isSortedAccordingTo(TradeTimeline.TIMESTAMP_ORDER);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(new ArrayList<>(repository.findTradesByStock(stock)))
+                .hasSize(threads * tradesPerThread)
+                .isSortedAccordingTo(TradeTimeline.TIMESTAMP_ORDER);
+    }
+
+    @Test
+    public void testCanRetrieveTradesAcrossStocksInTimestampOrder() {
+        final StockRepository repository = StockRepositoryInMemoryImpl.getInstance();
+        final Stock firstStock = createCommonStock("STK1", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock secondStock = createCommonStock("STK2", new BigDecimal("6"), new BigDecimal("120"));
+        final Instant now = Instant.now();
+        final Trade oldTrade = createOrder(firstStock, now.minus(Duration.ofHours(1)), 1, TradeIndicator.BUY, new BigDecimal("10.00"));
+        final Trade firstTrade = createOrder(secondStock, now.minusSeconds(40), 1, TradeIndicator.BUY, new BigDecimal("10.00"));
+        final Trade secondTrade = createOrder(firstStock, now.minusSeconds(30), 2, TradeIndicator.SELL, new BigDecimal("11.00"));
+        final Trade thirdTrade = createOrder(secondStock, now.minusSeconds(20), 3, TradeIndicator.BUY, new BigDecimal("12.00"));
+        final Trade fourthTrade = createOrder(firstStock, now.minusSeconds(10), 4, TradeIndicator.SELL, new BigDecimal("13.00"));
+
+        repository.record(fourthTrade);
+        repository.record(oldTrade);
+        repository.record(firstTrade);
+        repository.record(thirdTrade);
+        repository.record(secondTrade);
+
+        final Instant fiveMinutesAgo = now.minus(Duration.ofMinutes(5));
+
+        assertThat(repository.findTradesSinceInstant(fiveMinutesAgo).collect(Collectors.toList()))
+                .containsExactly(firstTrade, secondTrade, thirdTrade, fourthTrade);
+        assertThat(repository.findTradesSinceInstant(fiveMinutesAgo, 1, 2).collect(Collectors.toList()))
+                .as("Supports offset and limit").containsExactly(secondTrade, thirdTrade);
+        assertThat(repository.findTradesSinceInstant(now)).isEmpty();
+    }
+
     @Test
     public void testReturnsEmptySetIfStockHasNoTrades() {
         final StockRepository repository = StockRepositoryInMemoryImpl.getInstance();
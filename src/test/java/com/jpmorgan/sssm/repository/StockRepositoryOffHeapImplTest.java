@@ -0,0 +1,326 @@
+package com.jpmorgan.sssm.repository;
+
+import com.jpmorgan.sssm.model.MutableTrade;
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import com.jpmorgan.sssm.model.TradeIndicator;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.jpmorgan.sssm.model.Stock.createCommonStock;
+import static com.jpmorgan.sssm.model.Stock.createPreferredStock;
+import static com.jpmorgan.sssm.model.Trade.buyNow;
+import static com.jpmorgan.sssm.model.Trade.createOrder;
+import static com.jpmorgan.sssm.model.Trade.sellNow;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Anthony Accioly
+ */
+public class StockRepositoryOffHeapImplTest {
+
+    private StockRepository repository;
+
+    @BeforeMethod
+    public void setUp() {
+        // Tiny segments so that every test crosses segment boundaries
+        repository = StockRepositoryOffHeapImpl.create(2);
+    }
+
+    @Test
+    public void testCanNotCreateRepositoryWithEmptySegments() {
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> StockRepositoryOffHeapImpl.create(0))
+                .withMessage("Segments have to hold at least one trade");
+    }
+
+    @Test
+    public void testCanRecordTradeForNewStock() {
+        final Stock stock = createCommonStock("STCK", new BigDecimal("2"), new BigDecimal("80"));
+        final Trade trade = buyNow(stock, 10, new BigDecimal("1000.50"));
+
+        repository.record(trade);
+
+        assertThat(repository.findAllStocks()).hasSize(1).contains(stock);
+        assertThat(repository.findTradesByStock(stock)).hasSize(1).containsExactly(trade);
+    }
+
+    @Test
+    public void testKeepsTheFirstRecordedVersionOfEachStock() {
+        final Stock stock = createCommonStock("STCK", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock newDividend = createCommonStock("STCK", new BigDecimal("3"), new BigDecimal("80"));
+
+        repository.record(buyNow(stock, 10, new BigDecimal("1000.50")));
+        repository.record(sellNow(newDividend, 10, new BigDecimal("1000.50")));
+
+        assertThat(repository.findAllStocks()).extracting(Stock::getLastDividend).containsExactly(new BigDecimal("2.00"));
+        assertThat(repository.findTradesByStock(newDividend)).extracting(trade -> trade.getStock().getLastDividend())
+                .containsOnly(new BigDecimal("2.00"));
+    }
+
+    @Test
+    public void testResolvesStocksToTheirPublishedVersion() {
+        final StockReferenceRepository referenceRepository = new StockReferenceRepositoryInMemoryImpl();
+        final StockRepository resolvingRepository = StockRepositoryOffHeapImpl.create(referenceRepository);
+        final Stock stock = createCommonStock("STCK", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock newDividend = createCommonStock("STCK", new BigDecimal("3"), new BigDecimal("80"));
+
+        resolvingRepository.record(buyNow(stock, 10, new BigDecimal("1000.50")));
+        referenceRepository.update(newDividend);
+        resolvingRepository.record(sellNow(stock, 10, new BigDecimal("1000.50")));
+
+        assertThat(resolvingRepository.findAllStocks()).extracting(Stock::getLastDividend).containsExactly(new BigDecimal("3.00"));
+        assertThat(resolvingRepository.findTradesByStock(stock)).extracting(trade -> trade.getStock().getLastDividend())
+                .containsOnly(new BigDecimal("3.00"));
+        assertThat(resolvingRepository.snapshot().findTradesByStock(stock)).extracting(Trade::getStock).containsOnly(newDividend)
+                .allMatch(resolved -> resolved.getLastDividend().equals(new BigDecimal("3.00")));
+    }
+
+    @Test
+    public void testCanRecordTradesAcrossSegmentsForMultipleStocks() {
+        final Stock firstStock = createCommonStock("STK1", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock secondStock = createPreferredStock("STK2", new BigDecimal("6"), new BigDecimal("120"), new BigDecimal("0.02"));
+        final Trade firstTrade = buyNow(firstStock, 10, new BigDecimal("50.10"));
+        final Trade secondTrade = sellNow(secondStock, 10, new BigDecimal("800.53"));
+        final Trade thirdTrade = sellNow(secondStock, 20, new BigDecimal("2000.00"));
+        final Trade fourthTrade = buyNow(secondStock, 1, new BigDecimal("0.01"));
+
+        repository.record(firstTrade);
+        repository.record(secondTrade);
+        repository.record(thirdTrade);
+        repository.record(fourthTrade);
+
+        assertThat(repository.findAllStocks()).hasSize(2).contains(firstStock, secondStock);
+        assertThat(repository.findTradesByStock(firstStock)).containsExactly(firstTrade);
+        assertThat(repository.findTradesByStock(secondStock)).containsExactly(secondTrade, thirdTrade, fourthTrade);
+    }
+
+    @Test
+    public void testCanRecordMutableTradeWithoutMaterializingIt() {
+        final Stock stock = createCommonStock("STCK", new BigDecimal("2"), new BigDecimal("80"));
+        final Instant timestamp = Instant.parse("2016-05-10T10:00:00.123456789Z");
+        final MutableTrade trade = new MutableTrade();
+
+        repository.record(trade.set(stock, timestamp.getEpochSecond(), timestamp.getNano(), 10, TradeIndicator.BUY, 100050));
+        repository.record(trade.set(stock, timestamp.getEpochSecond() - 1, 0, 20, TradeIndicator.SELL, 99));
+
+        assertThat(repository.findTradesByStock(stock)).containsExactly(
+                createOrder(stock, timestamp.minusNanos(123456789).minusSeconds(1), 20, TradeIndicator.SELL, new BigDecimal("0.99")),
+                createOrder(stock, timestamp, 10, TradeIndicator.BUY, new BigDecimal("1000.50")));
+    }
+
+    @Test
+    public void testCanNotRecordNullTrade() {
+        assertThatExceptionOfType(NullPointerException.class).isThrownBy(() -> repository.record((Trade) null));
+    }
+
+    @Test
+    public void testCanRetrieveTradesForStockOverThePastFiveMinutes() {
+        final Stock stock = createCommonStock("STCK", new BigDecimal("2"), new BigDecimal("80"));
+        // 1 hour and a half ago
+        final Instant oldTradeTimeStamp = Instant.now().minus(Duration.ofHours(1).plusMinutes(30));
+        final Trade oldTrade = createOrder(stock, oldTradeTimeStamp, 15, TradeIndicator.BUY, new BigDecimal("1500.00"));
+        // 2 minutes ago
+        final Instant recentTradeTimeStamp = Instant.now().minus(Duration.ofMinutes(2));
+        final Trade recentTrade = createOrder(stock, recentTradeTimeStamp, 20, TradeIndicator.SELL, new BigDecimal("2000.00"));
+        // Right now
+        final Trade veryRecentTrade = buyNow(stock, 5, new BigDecimal("500.00"));
+
+        repository.record(oldTrade);
+        repository.record(recentTrade);
+        repository.record(veryRecentTrade);
+
+        final Instant fiveMinutesAgo = Instant.now().minus(Duration.ofMinutes(5));
+        final Collection<Trade> tradesOnTimeHorizon = repository.findTradesByStockSinceInstant(stock, fiveMinutesAgo);
+
+        assertThat(tradesOnTimeHorizon)
+                .as("Has expected size").hasSize(2)
+                .as("Contains only recent trades").contains(recentTrade, veryRecentTrade)
+                .as("Doesn't contain old trades ").doesNotContain(oldTrade);
+    }
+
+    @Test
+    public void testViewsOnlyContainTradesRecordedBeforeTheQuery() {
+        final Stock stock = createCommonStock("STCK", new BigDecimal("2"), new BigDecimal("80"));
+        final Trade trade = buyNow(stock, 10, new BigDecimal("10.00"));
+        repository.record(trade);
+
+        final Collection<Trade> tradesView = repository.findTradesByStock(stock);
+        repository.record(sellNow(stock, 10, new BigDecimal("11.00")));
+
+        assertThat(tradesView).containsExactly(trade);
+    }
+
+    @Test
+    public void testSnapshotsIgnoreTradesRecordedAfterThem() {
+        final Stock firstStock = createCommonStock("STK1", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock secondStock = createCommonStock("STK2", new BigDecimal("6"), new BigDecimal("120"));
+        final Instant now = Instant.now();
+        final Trade first = createOrder(firstStock, now.minusSeconds(30), 1, TradeIndicator.BUY, new BigDecimal("10.00"));
+        final Trade second = createOrder(firstStock, now.minusSeconds(10), 2, TradeIndicator.SELL, new BigDecimal("11.00"));
+        final Trade third = createOrder(firstStock, now.minusSeconds(5), 3, TradeIndicator.BUY, new BigDecimal("12.00"));
+        repository.record(first);
+        repository.record(second);
+        repository.record(third);
+
+        final StockHistory snapshot = repository.snapshot();
+        // Late trade shifting records across segments
+        repository.record(createOrder(firstStock, now.minusSeconds(20), 4, TradeIndicator.SELL, new BigDecimal("13.00")));
+        repository.record(createOrder(secondStock, now.minusSeconds(5), 5, TradeIndicator.BUY, new BigDecimal("14.00")));
+
+        assertThat(snapshot.findAllStocks()).containsExactly(firstStock);
+        assertThat(snapshot.findTradesByStock(firstStock)).containsExactly(first, second, third);
+        assertThat(snapshot.findTradesByStockSinceInstant(firstStock, now.minusSeconds(25))).containsExactly(second, third);
+        assertThat(repository.findTradesByStockSinceInstant(firstStock, now.minusSeconds(25))).hasSize(3);
+    }
+
+    @Test
+    public void testCanRecordBatchesOfTrades() {
+        final Stock firstStock = createCommonStock("STK1", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock secondStock = createCommonStock("STK2", new BigDecimal("6"), new BigDecimal("120"));
+        final Instant now = Instant.now();
+        final Trade first = createOrder(firstStock, now.minusSeconds(30), 1, TradeIndicator.BUY, new BigDecimal("10.00"));
+        final Trade second = createOrder(secondStock, now.minusSeconds(20), 2, TradeIndicator.SELL, new BigDecimal("11.00"));
+        final Trade third = createOrder(firstStock, now.minusSeconds(10), 3, TradeIndicator.BUY, new BigDecimal("12.00"));
+        final Trade late = createOrder(firstStock, now.minusSeconds(40), 4, TradeIndicator.SELL, new BigDecimal("13.00"));
+        repository.record(first);
+
+        repository.recordAll(Arrays.asList(second, third, late));
+
+        assertThat(repository.findTradesByStock(firstStock)).containsExactly(late, first, third);
+        assertThat(repository.findTradesByStock(secondStock)).containsExactly(second);
+        assertThat(repository.snapshot().findTradesSinceInstant(now.minus(Duration.ofMinutes(5))).collect(Collectors.toList()))
+                .containsExactly(late, first, second, third);
+    }
+
+    @Test
+    public void testCanRecordBatchesOfMutableTrades() {
+        final Stock firstStock = createCommonStock("STK1", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock secondStock = createCommonStock("STK2", new BigDecimal("6"), new BigDecimal("120"));
+        final long now = Instant.parse("2016-05-10T10:00:00Z").toEpochMilli();
+        final MutableTrade[] batch = {new MutableTrade(), new MutableTrade(), new MutableTrade(), new MutableTrade()};
+        repository.record(batch[0].set(firstStock, now - 30_000, 1, TradeIndicator.BUY, 1000));
+
+        batch[0].set(secondStock, now - 20_000, 2, TradeIndicator.SELL, 1100);
+        batch[1].set(firstStock, now - 10_000, 3, TradeIndicator.BUY, 1200);
+        batch[2].set(firstStock, now - 40_000, 4, TradeIndicator.SELL, 1300);
+        batch[3].set(firstStock, now, 5, TradeIndicator.BUY, 1400);
+        repository.recordAll(batch, 3);
+
+        assertThat(repository.findTradesByStock(firstStock)).extracting(Trade::getQuantity).containsExactly(4, 1, 3);
+        assertThat(repository.findTradesByStock(secondStock)).extracting(Trade::getQuantity).containsExactly(2);
+        assertThat(repository.snapshot().findTradesSinceInstant(Instant.EPOCH).collect(Collectors.toList()))
+                .extracting(Trade::getPrice).containsExactly(new BigDecimal("13.00"), new BigDecimal("10.00"),
+                new BigDecimal("11.00"), new BigDecimal("12.00"));
+    }
+
+    @Test
+    public void testKeepsTradesInTimestampOrder() {
+        final Stock stock = createCommonStock("LATE", new BigDecimal("2"), new BigDecimal("80"));
+        final Instant now = Instant.now();
+        final Trade first = createOrder(stock, now.minusSeconds(30), 1, TradeIndicator.BUY, new BigDecimal("10.00"));
+        final Trade second = createOrder(stock, now.minusSeconds(20), 2, TradeIndicator.SELL, new BigDecimal("11.00"));
+        final Trade third = createOrder(stock, now.minusSeconds(10), 3, TradeIndicator.BUY, new BigDecimal("12.00"));
+
+        repository.record(third);
+        repository.record(first);
+        repository.record(second);
+
+        assertThat(repository.findTradesByStock(stock)).containsExactly(first, second, third);
+        assertThat(repository.findTradesByStockSinceInstant(stock, now.minusSeconds(25))).containsExactly(second, third);
+    }
+
+    @Test
+    public void testMergesManyLateTradesLikeTheInMemoryRepository() {
+        final Stock stock = createCommonStock("LATE", new BigDecimal("2"), new BigDecimal("80"));
+        final StockRepository reference = StockRepositoryInMemoryImpl.create(RepositoryMode.WRITE_OPTIMIZED);
+        final Random random = new Random(7);
+        final Instant start = Instant.now().minus(Duration.ofMinutes(1));
+        StockHistory snapshot = null;
+        List<Trade> snapshotTrades = null;
+
+        for (int i = 0; i < 1_000; i++) {
+            // Adjacent trades swapped, with plenty of equal timestamps
+            final Instant timestamp = start.plusMillis(i + (i % 2 == 0 ? 1 : -1) + random.nextInt(3) * 100);
+            final Trade trade = createOrder(stock, timestamp, 1 + i, TradeIndicator.BUY, BigDecimal.valueOf(1 + i, 2));
+            if (i % 100 == 99) {
+                final List<Trade> batch = Arrays.asList(trade, createOrder(stock, start, 1, TradeIndicator.SELL, BigDecimal.ONE));
+                repository.recordAll(batch);
+                reference.recordAll(batch);
+            } else {
+                repository.record(trade);
+                reference.record(trade);
+            }
+            if (i == 500) {
+                snapshot = repository.snapshot();
+                snapshotTrades = new ArrayList<>(reference.findTradesByStock(stock));
+            }
+        }
+
+        assertThat(repository.findTradesByStock(stock)).containsExactlyElementsOf(reference.findTradesByStock(stock));
+        assertThat(snapshot.findTradesByStock(stock)).containsExactlyElementsOf(snapshotTrades);
+    }
+
+    @Test
+    public void testCanRetrieveTradesAcrossStocksInTimestampOrder() {
+        final Stock firstStock = createCommonStock("STK1", new BigDecimal("2"), new BigDecimal("80"));
+        final Stock secondStock = createCommonStock("STK2", new BigDecimal("6"), new BigDecimal("120"));
+        final Instant now = Instant.now();
+        final Trade oldTrade = createOrder(firstStock, now.minus(Duration.ofHours(1)), 1, TradeIndicator.BUY, new BigDecimal("10.00"));
+        final Trade firstTrade = createOrder(secondStock, now.minusSeconds(40), 1, TradeIndicator.BUY, new BigDecimal("10.00"));
+        final Trade secondTrade = createOrder(firstStock, now.minusSeconds(30), 2, TradeIndicator.SELL, new BigDecimal("11.00"));
+        final Trade thirdTrade = createOrder(secondStock, now.minusSeconds(20), 3, TradeIndicator.BUY, new BigDecimal("12.00"));
+        final Trade fourthTrade = createOrder(firstStock, now.minusSeconds(10), 4, TradeIndicator.SELL, new BigDecimal("13.00"));
+
+        repository.record(fourthTrade);
+        repository.record(oldTrade);
+        repository.record(firstTrade);
+        repository.record(thirdTrade);
+        repository.record(secondTrade);
+
+        final Instant fiveMinutesAgo = now.minus(Duration.ofMinutes(5));
+
+        assertThat(repository.findTradesSinceInstant(fiveMinutesAgo).collect(Collectors.toList()))
+                .containsExactly(firstTrade, secondTrade, thirdTrade, fourthTrade);
+        assertThat(repository.findTradesSinceInstant(fiveMinutesAgo, 1, 2).collect(Collectors.toList()))
+                .as("Supports offset and limit").containsExactly(secondTrade, thirdTrade);
+        assertThat(repository.findTradesSinceInstant(now)).isEmpty();
+    }
+
+    @Test
+    public void testReturnsEmptySetIfStockHasNoTrades() {
+        final Stock stock = createCommonStock("PHANT", new BigDecimal("4"), new BigDecimal("150"));
+
+        assertThat(repository.findTradesByStock(stock)).isEmpty();
+        assertThat(repository.findTradesByStockSinceInstant(stock, Instant.now())).isEmpty();
+    }
+
+    @Test
+    public void canNotModifyTheStockMarketUsingReturnedViews() {
+        final Stock sneakyStock = createCommonStock("SNEKY", new BigDecimal("0.6"), new BigDecimal("66"));
+        final Trade sneakyTrade = buyNow(sneakyStock, 1000, new BigDecimal("0.01"));
+        repository.record(sneakyTrade);
+
+        final Instant fiveMinutesAgo = Instant.now().minus(Duration.ofMinutes(5));
+
+        final Set<Stock> tradedStocksView = repository.findAllStocks();
+        final Collection<Trade> tradesForStockView = repository.findTradesByStock(sneakyStock);
+        final Collection<Trade> recentTradesForStockView = repository.findTradesByStockSinceInstant(sneakyStock, fiveMinutesAgo);
+
+        assertThatExceptionOfType(UnsupportedOperationException.class).isThrownBy(() -> tradedStocksView.add(sneakyStock));
+        assertThatExceptionOfType(UnsupportedOperationException.class).isThrownBy(() -> tradesForStockView.add(sneakyTrade));
+        assertThatExceptionOfType(UnsupportedOperationException.class).isThrownBy(() -> recentTradesForStockView.add(sneakyTrade));
+    }
+
+}
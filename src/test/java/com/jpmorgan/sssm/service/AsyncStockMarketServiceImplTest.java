@@ -0,0 +1,119 @@
+package com.jpmorgan.sssm.service;
+
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.repository.StockRepository;
+import com.jpmorgan.sssm.repository.StockRepositoryOffHeapImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.jpmorgan.sssm.model.Trade.buyNow;
+import static com.jpmorgan.sssm.model.Trade.sellNow;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Anthony Accioly
+ */
+public class AsyncStockMarketServiceImplTest {
+
+    private final Stock firstStock = Stock.createCommonStock("STK1", new BigDecimal("5.00"), new BigDecimal("200.00"));
+    private final Stock secondStock = Stock.createCommonStock("STK2", new BigDecimal("8.00"), new BigDecimal("100.00"));
+
+    private ExecutorService executor;
+    private CountDownLatch computationsReleased;
+    private AtomicInteger computations;
+    private AsyncStockMarketService asyncStockMarketService;
+
+    @BeforeMethod
+    public void setUp() {
+        final StockRepository stockRepository = StockRepositoryOffHeapImpl.create();
+        stockRepository.record(sellNow(firstStock, 100, new BigDecimal("220.00")));
+        stockRepository.record(sellNow(firstStock, 300, new BigDecimal("240.00")));
+        stockRepository.record(buyNow(secondStock, 100, new BigDecimal("190.00")));
+        stockRepository.record(buyNow(secondStock, 100, new BigDecimal("210.00")));
+
+        executor = Executors.newFixedThreadPool(2);
+        computationsReleased = new CountDownLatch(1);
+        computations = new AtomicInteger();
+        final StockMarketService stockMarketService = new StockMarketServiceImpl(stockRepository);
+        final StockMarketService blockingStockMarketService = new StockMarketService() {
+            @Override
+            public BigDecimal volumeWeightedStockPrice(Stock stock) {
+                awaitRelease();
+                return stockMarketService.volumeWeightedStockPrice(stock);
+            }
+
+            @Override
+            public BigDecimal allShareIndex() {
+                awaitRelease();
+                return stockMarketService.allShareIndex();
+            }
+        };
+        asyncStockMarketService = new AsyncStockMarketServiceImpl(blockingStockMarketService, executor);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCanCalculateMetricsAsynchronously() throws Exception {
+        computationsReleased.countDown();
+
+        assertThat(asyncStockMarketService.volumeWeightedStockPrice(firstStock).get(5, TimeUnit.SECONDS)).isEqualTo(new BigDecimal("235.00"));
+        assertThat(asyncStockMarketService.allShareIndex().get(5, TimeUnit.SECONDS)).isEqualTo(new BigDecimal("216.79"));
+    }
+
+    @Test
+    public void testIdenticalInFlightRequestsShareOneComputation() throws Exception {
+        final CompletableFuture<BigDecimal> firstRequest = asyncStockMarketService.volumeWeightedStockPrice(firstStock);
+        final CompletableFuture<BigDecimal> secondRequest = asyncStockMarketService.volumeWeightedStockPrice(firstStock);
+        final CompletableFuture<BigDecimal> otherStockRequest = asyncStockMarketService.volumeWeightedStockPrice(secondStock);
+        computationsReleased.countDown();
+
+        assertThat(firstRequest.get(5, TimeUnit.SECONDS)).isEqualTo(new BigDecimal("235.00"));
+        assertThat(secondRequest.get(5, TimeUnit.SECONDS)).isEqualTo(new BigDecimal("235.00"));
+        assertThat(otherStockRequest.get(5, TimeUnit.SECONDS)).isEqualTo(new BigDecimal("200.00"));
+        assertThat(computations.get()).as("One computation per stock").isEqualTo(2);
+    }
+
+    @Test
+    public void testCompletedComputationsAreNotReused() throws Exception {
+        computationsReleased.countDown();
+
+        asyncStockMarketService.allShareIndex().get(5, TimeUnit.SECONDS);
+        asyncStockMarketService.allShareIndex().get(5, TimeUnit.SECONDS);
+
+        assertThat(computations.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testCancellingOneRequestDoesNotAffectOthers() throws Exception {
+        final CompletableFuture<BigDecimal> cancelledRequest = asyncStockMarketService.allShareIndex();
+        final CompletableFuture<BigDecimal> request = asyncStockMarketService.allShareIndex();
+
+        cancelledRequest.cancel(true);
+        computationsReleased.countDown();
+
+        assertThat(request.get(5, TimeUnit.SECONDS)).isEqualTo(new BigDecimal("216.79"));
+    }
+
+    private void awaitRelease() {
+        computations.incrementAndGet();
+        try {
+            computationsReleased.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.jpmorgan.sssm.service;
+
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.repository.ObservableStockRepository;
+import com.jpmorgan.sssm.repository.StockRepository;
+import com.jpmorgan.sssm.repository.StockRepositoryOffHeapImpl;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+import static com.jpmorgan.sssm.model.Trade.createOrder;
+import static com.jpmorgan.sssm.model.TradeIndicator.BUY;
+import static com.jpmorgan.sssm.model.TradeIndicator.SELL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.data.Offset.offset;
+
+/**
+ * @author Anthony Accioly
+ */
+public class MovingAverageServiceImplTest {
+
+    private static final Duration HALF_LIFE = Duration.ofMinutes(1);
+    /**
+     * Decay rate per second
+     */
+    private static final double LAMBDA = Math.log(2) / HALF_LIFE.getSeconds();
+
+    private final Stock stock = Stock.createCommonStock("STCK", new BigDecimal("5.00"), new BigDecimal("200.00"));
+
+    private MutableClock clock;
+    private MovingAverageServiceImpl movingAverageService;
+    private StockRepository stockRepository;
+
+    @BeforeMethod
+    public void setUp() {
+        clock = new MutableClock(Instant.parse("2016-05-10T10:00:00Z"));
+        movingAverageService = new MovingAverageServiceImpl(HALF_LIFE, clock);
+        stockRepository = new ObservableStockRepository(StockRepositoryOffHeapImpl.create()).addListener(movingAverageService);
+    }
+
+    @Test
+    public void testCanNotCreateEngineWithoutHalfLife() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new MovingAverageServiceImpl(Duration.ZERO))
+                .withMessage("Half-life has to be positive");
+    }
+
+    @Test
+    public void testAveragesAreZeroWithoutTrades() {
+        final MovingAverages averages = movingAverageService.averages(stock);
+
+        assertThat(averages.getPrice()).isEqualTo(new BigDecimal("0.00"));
+        assertThat(averages.getVolumePerSecond()).isZero();
+    }
+
+    @Test
+    public void testSimultaneousTradesAverageToTheirVolumeWeightedPrice() {
+        stockRepository.record(createOrder(stock, clock.instant(), 100, SELL, new BigDecimal("220.00")));
+        stockRepository.record(createOrder(stock, clock.instant(), 300, BUY, new BigDecimal("240.00")));
+
+        final MovingAverages averages = movingAverageService.averages(stock);
+
+        assertThat(averages.getPrice()).isEqualTo(new BigDecimal("235.00"));
+        assertThat(averages.getVolumePerSecond()).isCloseTo(400 * LAMBDA, offset(1e-9));
+    }
+
+    @Test
+    public void testTradesWeightHalfAsMuchEveryHalfLife() {
+        stockRepository.record(createOrder(stock, clock.instant(), 100, BUY, new BigDecimal("10.00")));
+        clock.advance(HALF_LIFE);
+        stockRepository.record(createOrder(stock, clock.instant(), 100, SELL, new BigDecimal("20.00")));
+
+        final MovingAverages averages = movingAverageService.averages(stock);
+
+        // (10 * 50 + 20 * 100) / 150
+        assertThat(averages.getPrice()).isEqualTo(new BigDecimal("16.67"));
+        assertThat(averages.getVolumePerSecond()).isCloseTo(150 * LAMBDA, offset(1e-9));
+    }
+
+    @Test
+    public void testDecaysVolumeBetweenTradesButKeepsPrice() {
+        stockRepository.record(createOrder(stock, clock.instant(), 1000, BUY, new BigDecimal("10.00")));
+        final MovingAverages averages = movingAverageService.averages(stock);
+
+        clock.advance(HALF_LIFE.multipliedBy(2));
+        final MovingAverages decayedAverages = movingAverageService.averages(stock);
+
+        assertThat(decayedAverages.getPrice()).isEqualTo(averages.getPrice());
+        assertThat(decayedAverages.getVolumePerSecond()).isCloseTo(averages.getVolumePerSecond() / 4, offset(1e-9));
+    }
+
+    @Test
+    public void testLateTradesAreWeightedByTheirAge() {
+        final Instant now = clock.instant();
+        stockRepository.record(createOrder(stock, now, 100, SELL, new BigDecimal("20.00")));
+        stockRepository.record(createOrder(stock, now.minus(HALF_LIFE), 100, BUY, new BigDecimal("10.00")));
+
+        assertThat(movingAverageService.averages(stock).getPrice()).isEqualTo(new BigDecimal("16.67"));
+    }
+
+    @Test
+    public void testConvergesToTheRateOfASteadyFlowOfTrades() {
+        for (int second = 0; second < 20 * HALF_LIFE.getSeconds(); second++) {
+            stockRepository.record(createOrder(stock, clock.instant(), 50, BUY, new BigDecimal("10.00")));
+            clock.advance(Duration.ofSeconds(1));
+        }
+
+        final MovingAverages averages = movingAverageService.averages(stock);
+
+        assertThat(averages.getPrice()).isEqualTo(new BigDecimal("10.00"));
+        assertThat(averages.getVolumePerSecond()).isCloseTo(50, offset(1.0));
+    }
+}
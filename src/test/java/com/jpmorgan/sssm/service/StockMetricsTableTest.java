@@ -0,0 +1,205 @@
+package com.jpmorgan.sssm.service;
+
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.model.Trade;
+import com.jpmorgan.sssm.repository.ObservableStockRepository;
+import com.jpmorgan.sssm.repository.StockHistory;
+import com.jpmorgan.sssm.repository.StockReferenceRepository;
+import com.jpmorgan.sssm.repository.StockReferenceRepositoryInMemoryImpl;
+import com.jpmorgan.sssm.repository.StockRepository;
+import com.jpmorgan.sssm.repository.StockRepositoryOffHeapImpl;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.jpmorgan.sssm.model.Trade.createOrder;
+import static com.jpmorgan.sssm.model.TradeIndicator.BUY;
+import static com.jpmorgan.sssm.model.TradeIndicator.SELL;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Anthony Accioly
+ */
+public class StockMetricsTableTest {
+
+    private final Stock firstStock = Stock.createCommonStock("STK1", new BigDecimal("5.00"), new BigDecimal("200.00"));
+    private final Stock secondStock = Stock.createPreferredStock("STK2", BigDecimal.ZERO, new BigDecimal("100.00"), new BigDecimal("0.02"));
+
+    private MutableClock clock;
+    private StockRepository stockRepository;
+    private StockReferenceRepository stockReferenceRepository;
+    private StockMetricsTable metricsTable;
+
+    @BeforeMethod
+    public void setUp() {
+        clock = new MutableClock(Instant.parse("2016-05-10T10:00:00Z"));
+        stockReferenceRepository = new StockReferenceRepositoryInMemoryImpl();
+        final ObservableStockRepository observableRepository =
+                new ObservableStockRepository(StockRepositoryOffHeapImpl.create(stockReferenceRepository));
+        metricsTable = StockMetricsTable.create(observableRepository, stockReferenceRepository, clock);
+        stockRepository = observableRepository;
+    }
+
+    @Test
+    public void testCanComputeMetricsForEveryStock() {
+        stockRepository.record(createOrder(firstStock, clock.instant(), 100, SELL, new BigDecimal("220.00")));
+        stockRepository.record(createOrder(firstStock, clock.instant(), 300, SELL, new BigDecimal("240.00")));
+        stockRepository.record(createOrder(secondStock, clock.instant(), 100, BUY, new BigDecimal("200.00")));
+
+        final StockMetricsSnapshot snapshot = metricsTable.snapshot();
+
+        assertThat(snapshot.allMetrics()).hasSize(2);
+        final StockMetrics firstMetrics = snapshot.metrics(firstStock).get();
+        assertThat(firstMetrics.getVolumeWeightedPrice()).isEqualTo(new BigDecimal("235.00"));
+        assertThat(firstMetrics.getDividendYield()).contains(firstStock.dividendYield(new BigDecimal("235.00")));
+        assertThat(firstMetrics.getPriceToEarningsRatio()).contains(firstStock.priceToEarningsRatio(new BigDecimal("235.00")));
+        final StockMetrics secondMetrics = snapshot.metrics(secondStock).get();
+        assertThat(secondMetrics.getDividendYield()).contains(new BigDecimal("0.01000"));
+        assertThat(secondMetrics.getPriceToEarningsRatio()).as("No dividends were paid").isEmpty();
+    }
+
+    @Test
+    public void testReturnsSameSnapshotWhenNothingChanged() {
+        stockRepository.record(createOrder(firstStock, clock.instant(), 100, SELL, new BigDecimal("220.00")));
+
+        final StockMetricsSnapshot snapshot = metricsTable.snapshot();
+        clock.advance(Duration.ofMinutes(1));
+
+        assertThat(metricsTable.snapshot()).isSameAs(snapshot);
+    }
+
+    @Test
+    public void testOnlyRecomputesStocksWithNewTrades() {
+        stockRepository.record(createOrder(firstStock, clock.instant(), 100, SELL, new BigDecimal("220.00")));
+        stockRepository.record(createOrder(secondStock, clock.instant(), 100, BUY, new BigDecimal("200.00")));
+        final StockMetricsSnapshot snapshot = metricsTable.snapshot();
+
+        stockRepository.record(createOrder(firstStock, clock.instant(), 300, SELL, new BigDecimal("240.00")));
+        final StockMetricsSnapshot newSnapshot = metricsTable.snapshot();
+
+        assertThat(newSnapshot).isNotSameAs(snapshot);
+        assertThat(newSnapshot.metrics(firstStock).get().getVolumeWeightedPrice()).isEqualTo(new BigDecimal("235.00"));
+        assertThat(newSnapshot.metrics(secondStock).get()).isSameAs(snapshot.metrics(secondStock).get());
+    }
+
+    @Test
+    public void testRecomputesStocksTradedAgainAfterAnEmptyTimePeriod() {
+        stockRepository.record(createOrder(firstStock, clock.instant().minus(StockMarketService.VWAP_TIME_PERIOD), 100, SELL,
+                new BigDecimal("220.00")));
+        assertThat(metricsTable.snapshot().metrics(firstStock).get().getVolumeWeightedPrice()).isEqualTo(new BigDecimal("0.00"));
+
+        stockRepository.record(createOrder(firstStock, clock.instant(), 300, SELL, new BigDecimal("240.00")));
+
+        assertThat(metricsTable.snapshot().metrics(firstStock).get().getVolumeWeightedPrice()).isEqualTo(new BigDecimal("240.00"));
+    }
+
+    @Test
+    public void testRecomputesStocksWithTradesLeavingTheTimePeriod() {
+        stockRepository.record(createOrder(firstStock, clock.instant(), 100, SELL, new BigDecimal("220.00")));
+        metricsTable.snapshot();
+
+        clock.advance(StockMarketService.VWAP_TIME_PERIOD);
+        final StockMetrics metrics = metricsTable.snapshot().metrics(firstStock).get();
+
+        assertThat(metrics.getVolumeWeightedPrice()).isEqualTo(new BigDecimal("0.00"));
+        assertThat(metrics.getDividendYield()).isEmpty();
+        assertThat(metrics.getPriceToEarningsRatio()).isEmpty();
+    }
+
+    @Test
+    public void testRecomputesStocksWithTradesRecordedRightAfterTheHistoryWasRead() {
+        final Trade concurrentTrade = createOrder(firstStock, clock.instant(), 300, SELL, new BigDecimal("240.00"));
+        final TradeAfterSnapshotRepository repository = new TradeAfterSnapshotRepository(StockRepositoryOffHeapImpl.create(), concurrentTrade);
+        final ObservableStockRepository observableRepository = new ObservableStockRepository(repository);
+        repository.recordThrough(observableRepository);
+        final StockMetricsTable table = StockMetricsTable.create(observableRepository, stockReferenceRepository, clock);
+        observableRepository.record(createOrder(firstStock, clock.instant(), 100, SELL, new BigDecimal("220.00")));
+
+        assertThat(table.snapshot().metrics(firstStock).get().getVolumeWeightedPrice()).isEqualTo(new BigDecimal("220.00"));
+        assertThat(table.snapshot().metrics(firstStock).get().getVolumeWeightedPrice())
+                .as("Trade flagged the stock after it was read").isEqualTo(new BigDecimal("235.00"));
+    }
+
+    @Test
+    public void testRecomputesStocksWithNewReferenceData() {
+        stockRepository.record(createOrder(firstStock, clock.instant(), 100, SELL, new BigDecimal("220.00")));
+        final StockMetricsSnapshot snapshot = metricsTable.snapshot();
+
+        final Stock newDividend = Stock.createCommonStock("STK1", new BigDecimal("11.00"), new BigDecimal("200.00"));
+        stockReferenceRepository.update(newDividend);
+        final StockMetrics metrics = metricsTable.snapshot().metrics(firstStock).get();
+
+        assertThat(snapshot.metrics(firstStock).get().getDividendYield()).contains(firstStock.dividendYield(new BigDecimal("220.00")));
+        assertThat(metrics.getStock().getLastDividend()).isEqualTo(new BigDecimal("11.00"));
+        assertThat(metrics.getVolumeWeightedPrice()).isEqualTo(new BigDecimal("220.00"));
+        assertThat(metrics.getDividendYield()).contains(newDividend.dividendYield(new BigDecimal("220.00")));
+        assertThat(metrics.getPriceToEarningsRatio()).contains(newDividend.priceToEarningsRatio(new BigDecimal("220.00")));
+        assertThat(metricsTable.snapshot().getMetricsByStock().keySet()).extracting(Stock::getLastDividend)
+                .contains(new BigDecimal("11.00"));
+        assertThat(metricsTable.snapshot().metrics(firstStock).get()).isSameAs(metrics);
+    }
+
+    /**
+     * Records a trade right after the first snapshot is taken, as a concurrent writer could.
+     */
+    private static final class TradeAfterSnapshotRepository implements StockRepository {
+        private final StockRepository delegate;
+        private Trade pendingTrade;
+        private StockRepository recorder;
+
+        private TradeAfterSnapshotRepository(StockRepository delegate, Trade pendingTrade) {
+            this.delegate = delegate;
+            this.pendingTrade = pendingTrade;
+            this.recorder = delegate;
+        }
+
+        /**
+         * Records the pending trade through a decorator of this repository, so that its listeners are notified.
+         */
+        private void recordThrough(StockRepository decorator) {
+            this.recorder = decorator;
+        }
+
+        @Override
+        public StockHistory snapshot() {
+            final StockHistory history = delegate.snapshot();
+            if (pendingTrade != null) {
+                final Trade trade = pendingTrade;
+                pendingTrade = null;
+                recorder.record(trade);
+            }
+            return history;
+        }
+
+        @Override
+        public void record(Trade trade) {
+            delegate.record(trade);
+        }
+
+        @Override
+        public Set<Stock> findAllStocks() {
+            return delegate.findAllStocks();
+        }
+
+        @Override
+        public Collection<Trade> findTradesByStock(Stock stock) {
+            return delegate.findTradesByStock(stock);
+        }
+
+        @Override
+        public Collection<Trade> findTradesByStockSinceInstant(Stock stock, Instant instant) {
+            return delegate.findTradesByStockSinceInstant(stock, instant);
+        }
+
+        @Override
+        public Stream<Trade> findTradesSinceInstant(Instant instant) {
+            return delegate.findTradesSinceInstant(instant);
+        }
+    }
+}
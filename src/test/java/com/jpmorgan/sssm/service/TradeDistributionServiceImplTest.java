@@ -0,0 +1,62 @@
+package com.jpmorgan.sssm.service;
+
+import com.jpmorgan.sssm.model.Stock;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+import static com.jpmorgan.sssm.model.Trade.createOrder;
+import static com.jpmorgan.sssm.model.TradeIndicator.BUY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Offset.offset;
+
+/**
+ * @author Anthony Accioly
+ */
+public class TradeDistributionServiceImplTest {
+
+    private final Stock stock = Stock.createCommonStock("STCK", new BigDecimal("5.00"), new BigDecimal("200.00"));
+
+    private MutableClock clock;
+    private TradeDistributionServiceImpl distributionService;
+
+    @BeforeMethod
+    public void setUp() {
+        clock = new MutableClock(Instant.parse("2016-05-10T10:00:00Z"));
+        distributionService = new TradeDistributionServiceImpl(Duration.ofMinutes(5), Duration.ofSeconds(30), clock);
+    }
+
+    @Test
+    public void testCanEstimateQuantilesAcrossTimeBuckets() {
+        // One trade per second over 100 seconds, spread over four time buckets
+        for (int i = 1; i <= 100; i++) {
+            distributionService.accept(createOrder(stock, clock.instant(), i * 10, BUY, BigDecimal.valueOf(i)));
+            clock.advance(Duration.ofSeconds(1));
+        }
+
+        assertThat(distributionService.priceQuantile(stock, 0.5)).isCloseTo(new BigDecimal("50.00"), offset(new BigDecimal("0.50")));
+        assertThat(distributionService.priceQuantile(stock, 0.99)).isCloseTo(new BigDecimal("99.00"), offset(new BigDecimal("0.99")));
+        assertThat(distributionService.priceQuantile(stock, 0)).isCloseTo(new BigDecimal("1.00"), offset(new BigDecimal("0.01")));
+        assertThat(distributionService.quantityQuantile(stock, 0.95)).isCloseTo(950, offset(10L));
+    }
+
+    @Test
+    public void testOnlyEstimatesTradesInsideTheWindow() {
+        distributionService.accept(createOrder(stock, clock.instant(), 1000, BUY, new BigDecimal("1000.00")));
+        clock.advance(Duration.ofMinutes(4));
+        distributionService.accept(createOrder(stock, clock.instant(), 10, BUY, new BigDecimal("10.00")));
+        clock.advance(Duration.ofMinutes(2));
+
+        assertThat(distributionService.priceQuantile(stock, 1)).isCloseTo(new BigDecimal("10.00"), offset(new BigDecimal("0.10")));
+        assertThat(distributionService.quantityQuantile(stock, 1)).isCloseTo(10, offset(1L));
+    }
+
+    @Test
+    public void testQuantilesAreZeroWhenThereAreNoTrades() {
+        assertThat(distributionService.priceQuantile(stock, 0.5)).isEqualTo(new BigDecimal("0.00"));
+        assertThat(distributionService.quantityQuantile(stock, 0.5)).isZero();
+    }
+}
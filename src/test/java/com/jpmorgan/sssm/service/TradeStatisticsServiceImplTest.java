@@ -0,0 +1,97 @@
+package com.jpmorgan.sssm.service;
+
+import com.jpmorgan.sssm.model.Stock;
+import com.jpmorgan.sssm.repository.ObservableStockRepository;
+import com.jpmorgan.sssm.repository.StockRepository;
+import com.jpmorgan.sssm.repository.StockRepositoryOffHeapImpl;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+import static com.jpmorgan.sssm.model.Trade.createOrder;
+import static com.jpmorgan.sssm.model.TradeIndicator.BUY;
+import static com.jpmorgan.sssm.model.TradeIndicator.SELL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Anthony Accioly
+ */
+public class TradeStatisticsServiceImplTest {
+
+    private final Stock stock = Stock.createCommonStock("STCK", new BigDecimal("5.00"), new BigDecimal("200.00"));
+
+    private MutableClock clock;
+    private TradeStatisticsServiceImpl statisticsService;
+    private StockRepository stockRepository;
+
+    @BeforeMethod
+    public void setUp() {
+        clock = new MutableClock(Instant.parse("2016-05-10T10:00:00Z"));
+        statisticsService = new TradeStatisticsServiceImpl(Duration.ofMinutes(5), Duration.ofSeconds(1), clock);
+        stockRepository = new ObservableStockRepository(StockRepositoryOffHeapImpl.create()).addListener(statisticsService);
+    }
+
+    @Test
+    public void testCanNotCreateEngineWithWindowShorterThanResolution() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new TradeStatisticsServiceImpl(Duration.ofSeconds(1), Duration.ofMinutes(1)))
+                .withMessage("Window has to be equal or greater than the resolution");
+    }
+
+    @Test
+    public void testCanCalculateStatisticsForRecordedTrades() {
+        stockRepository.record(createOrder(stock, clock.instant().minusSeconds(30), 100, BUY, new BigDecimal("220.00")));
+        stockRepository.record(createOrder(stock, clock.instant().minusSeconds(20), 300, SELL, new BigDecimal("240.00")));
+        stockRepository.record(createOrder(stock, clock.instant(), 50, BUY, new BigDecimal("210.50")));
+
+        final TradeStatistics statistics = statisticsService.statistics(stock);
+
+        assertThat(statistics.getTradeCount()).isEqualTo(3);
+        assertThat(statistics.getVolume()).isEqualTo(450);
+        assertThat(statistics.getBuyVolume()).isEqualTo(150);
+        assertThat(statistics.getSellVolume()).isEqualTo(300);
+        assertThat(statistics.getTurnover()).isEqualTo(new BigDecimal("104525.00"));
+        assertThat(statistics.getMinPrice()).isEqualTo(new BigDecimal("210.50"));
+        assertThat(statistics.getMaxPrice()).isEqualTo(new BigDecimal("240.00"));
+        assertThat(statistics.buySellImbalance()).isEqualByComparingTo(new BigDecimal("-0.33333"));
+    }
+
+    @Test
+    public void testTradesAreEvictedWhenTheyLeaveTheWindow() {
+        stockRepository.record(createOrder(stock, clock.instant(), 1000, BUY, new BigDecimal("300.00")));
+        clock.advance(Duration.ofMinutes(3));
+        stockRepository.record(createOrder(stock, clock.instant(), 100, SELL, new BigDecimal("190.00")));
+        clock.advance(Duration.ofMinutes(3));
+
+        final TradeStatistics statistics = statisticsService.statistics(stock);
+
+        assertThat(statistics.getTradeCount()).isEqualTo(1);
+        assertThat(statistics.getVolume()).isEqualTo(100);
+        assertThat(statistics.getTurnover()).isEqualTo(new BigDecimal("19000.00"));
+        assertThat(statistics.getMinPrice()).isEqualTo(new BigDecimal("190.00"));
+        assertThat(statistics.getMaxPrice()).isEqualTo(new BigDecimal("190.00"));
+        assertThat(statistics.buySellImbalance()).isEqualByComparingTo(BigDecimal.ONE.negate());
+    }
+
+    @Test
+    public void testIgnoresTradesOlderThanTheWindow() {
+        stockRepository.record(createOrder(stock, clock.instant().minus(Duration.ofHours(1)), 1000, BUY, new BigDecimal("300.00")));
+
+        assertThat(statisticsService.statistics(stock).getTradeCount()).isZero();
+    }
+
+    @Test
+    public void testStatisticsAreEmptyWhenThereAreNoTrades() {
+        final TradeStatistics statistics = statisticsService.statistics(stock);
+
+        assertThat(statistics.getTradeCount()).isZero();
+        assertThat(statistics.getVolume()).isZero();
+        assertThat(statistics.getTurnover()).isEqualTo(new BigDecimal("0.00"));
+        assertThat(statistics.getMinPrice()).isEqualTo(new BigDecimal("0.00"));
+        assertThat(statistics.buySellImbalance()).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+}